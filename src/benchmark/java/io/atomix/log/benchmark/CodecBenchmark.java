@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.log.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.google.protobuf.ByteString;
+import io.atomix.protocols.log.Compression;
+import io.atomix.protocols.log.LogEntry;
+import io.atomix.protocols.log.protocol.DistributedLogCodec;
+import io.atomix.protocols.log.protocol.EntryCompression;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of encoding and decoding journal entries, and of compressing and decompressing their values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CodecBenchmark {
+  @Param({"128", "1024", "65536"})
+  public int valueSize;
+
+  @Param({"NONE", "DEFLATE"})
+  public Compression compression;
+
+  private DistributedLogCodec codec;
+  private ByteString value;
+  private LogEntry entry;
+  private ByteBuffer encodeBuffer;
+  private ByteBuffer decodeBuffer;
+
+  @Setup
+  public void setup() throws IOException {
+    codec = new DistributedLogCodec();
+
+    // Use half random and half repeated bytes so compression has something to do.
+    byte[] bytes = new byte[valueSize];
+    ThreadLocalRandom.current().nextBytes(bytes);
+    for (int i = valueSize / 2; i < valueSize; i++) {
+      bytes[i] = (byte) (i % 8);
+    }
+    value = ByteString.copyFrom(bytes);
+    entry = LogEntry.newBuilder()
+        .setTerm(1)
+        .setTimestamp(System.currentTimeMillis())
+        .setValue(compression == Compression.DEFLATE ? EntryCompression.deflate(value) : value)
+        .setCompression(compression)
+        .setProducerId("producer")
+        .setSequence(1)
+        .build();
+
+    encodeBuffer = ByteBuffer.allocate(valueSize * 2 + 64);
+    decodeBuffer = ByteBuffer.allocate(valueSize * 2 + 64);
+    codec.encode(entry, decodeBuffer);
+    decodeBuffer.flip();
+  }
+
+  @Benchmark
+  public ByteBuffer encode() throws IOException {
+    encodeBuffer.clear();
+    codec.encode(entry, encodeBuffer);
+    return encodeBuffer;
+  }
+
+  @Benchmark
+  public LogEntry decode() throws IOException {
+    decodeBuffer.rewind();
+    return codec.decode(decodeBuffer);
+  }
+
+  @Benchmark
+  public ByteString compress() {
+    return compression == Compression.DEFLATE ? EntryCompression.deflate(value) : value;
+  }
+
+  @Benchmark
+  public ByteString decompress() {
+    return EntryCompression.decompress(entry.getValue(), entry.getCompression());
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.log.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.google.protobuf.ByteString;
+import io.atomix.protocols.log.DistributedLogProducer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of delivering records from the leader to many consumers.
+ * <p>
+ * Each invocation appends a batch of records and waits for every consumer to receive the whole batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ConsumerFanOutBenchmark {
+  @Param({"1", "4", "16"})
+  public int consumers;
+
+  @Param({"128", "1024"})
+  public int valueSize;
+
+  @Param({"1", "32", "256"})
+  public int batchSize;
+
+  private LogCluster cluster;
+  private DistributedLogProducer producer;
+  private ByteString value;
+  private CompletableFuture<?>[] futures;
+  private volatile CountDownLatch latch = new CountDownLatch(0);
+
+  @Setup
+  public void setup() throws IOException {
+    cluster = new LogCluster(1, builder -> builder.withMaxLogSize(1024 * 1024 * 64));
+    producer = cluster.createClient().producer();
+    for (int i = 0; i < consumers; i++) {
+      cluster.createClient().consumer().consume(1, record -> latch.countDown()).join();
+    }
+    byte[] bytes = new byte[valueSize];
+    ThreadLocalRandom.current().nextBytes(bytes);
+    value = ByteString.copyFrom(bytes);
+    futures = new CompletableFuture[batchSize];
+  }
+
+  @Benchmark
+  public void consume(EntryCounter counter) throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(batchSize * consumers);
+    this.latch = latch;
+    for (int i = 0; i < batchSize; i++) {
+      futures[i] = producer.append(value);
+    }
+    CompletableFuture.allOf(futures).join();
+    latch.await();
+    counter.entries += batchSize;
+  }
+
+  @TearDown
+  public void teardown() throws IOException {
+    cluster.close();
+  }
+}
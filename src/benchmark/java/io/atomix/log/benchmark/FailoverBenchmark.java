@@ -0,0 +1,289 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.log.benchmark;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import io.atomix.log.protocol.LinkConditions;
+import io.atomix.log.protocol.TestNetwork;
+import io.atomix.protocols.log.DistributedLogProducer;
+import io.atomix.protocols.log.DistributedLogServer;
+import io.atomix.protocols.log.ReplicationStrategy;
+import io.atomix.protocols.log.metrics.Histogram;
+import io.atomix.protocols.log.metrics.HistogramSnapshot;
+
+/**
+ * Leader failover benchmark.
+ * <p>
+ * Runs a cluster in a single JVM under steady load from one producer and one consumer, fails the leader, and elects the
+ * next server as leader after a configurable detection delay. The leader is either stopped ({@code KILL}) or
+ * partitioned from all other members and from term changes ({@code ISOLATE}). Each run measures:
+ * <ul>
+ *   <li>the time from the failure to the first successful append sent after the failure</li>
+ *   <li>the time from the failure until append throughput recovers to 90% of its rate before the failure</li>
+ *   <li>the longest pause in deliveries to the consumer across the failure</li>
+ *   <li>records delivered to the consumer more than once, appends that failed, and acknowledged appends never
+ *   delivered to the consumer</li>
+ * </ul>
+ * After the configured number of runs, one JSON object is printed for each replication strategy and failure mode with
+ * the distribution of each measurement in milliseconds, along with the number of runs in which no append succeeded
+ * ({@code unrecovered}) or throughput did not recover ({@code throttled}) after the failure. Options take the form
+ * {@code --name=value}:
+ * <pre>
+ *   --runs=20 --nodes=3 --replication=SYNCHRONOUS,ASYNCHRONOUS --failure=KILL,ISOLATE --rate=1000
+ *   --value-size=128 --warmup-ms=1000 --observe-ms=3000 --detection-ms=0 --timeout-ms=200 --latency-us=0
+ * </pre>
+ */
+public class FailoverBenchmark {
+  private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final double RECOVERED_THROUGHPUT = .9;
+
+  /**
+   * Leader failure mode.
+   */
+  enum Failure {
+    KILL,
+    ISOLATE,
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      int separator = arg.indexOf('=');
+      if (!arg.startsWith("--") || separator < 0) {
+        throw new IllegalArgumentException("Invalid option " + arg);
+      }
+      options.put(arg.substring(2, separator), arg.substring(separator + 1));
+    }
+
+    int runs = Integer.parseInt(options.getOrDefault("runs", "20"));
+    for (String replication : options.getOrDefault("replication", "SYNCHRONOUS,ASYNCHRONOUS").split(",")) {
+      for (String failure : options.getOrDefault("failure", "KILL,ISOLATE").split(",")) {
+        FailoverBenchmark benchmark = new FailoverBenchmark(
+            Integer.parseInt(options.getOrDefault("nodes", "3")),
+            ReplicationStrategy.valueOf(replication.trim().toUpperCase()),
+            Failure.valueOf(failure.trim().toUpperCase()),
+            Integer.parseInt(options.getOrDefault("rate", "1000")),
+            Integer.parseInt(options.getOrDefault("value-size", "128")),
+            Duration.ofMillis(Long.parseLong(options.getOrDefault("warmup-ms", "1000"))),
+            Duration.ofMillis(Long.parseLong(options.getOrDefault("observe-ms", "3000"))),
+            Duration.ofMillis(Long.parseLong(options.getOrDefault("detection-ms", "0"))),
+            Duration.ofMillis(Long.parseLong(options.getOrDefault("timeout-ms", "200"))),
+            Duration.ofNanos(Long.parseLong(options.getOrDefault("latency-us", "0")) * 1000));
+        for (int run = 0; run < runs; run++) {
+          benchmark.run(run);
+        }
+        System.out.println(benchmark.toJson());
+      }
+    }
+    System.exit(0);
+  }
+
+  private final int nodes;
+  private final ReplicationStrategy replicationStrategy;
+  private final Failure failure;
+  private final int rate;
+  private final int valueSize;
+  private final Duration warmup;
+  private final Duration observe;
+  private final Duration detection;
+  private final Duration timeout;
+  private final Duration latency;
+  private final Histogram firstAppend = new Histogram();
+  private final Histogram recovery = new Histogram();
+  private final Histogram resumeGap = new Histogram();
+  private int runs;
+  private int unrecovered;
+  private int throttled;
+  private long duplicates;
+  private long failed;
+  private long lost;
+
+  FailoverBenchmark(
+      int nodes,
+      ReplicationStrategy replicationStrategy,
+      Failure failure,
+      int rate,
+      int valueSize,
+      Duration warmup,
+      Duration observe,
+      Duration detection,
+      Duration timeout,
+      Duration latency) {
+    this.nodes = nodes;
+    this.replicationStrategy = replicationStrategy;
+    this.failure = failure;
+    this.rate = rate;
+    this.valueSize = Math.max(valueSize, Long.BYTES);
+    this.warmup = warmup;
+    this.observe = observe;
+    this.detection = detection;
+    this.timeout = timeout;
+    this.latency = latency;
+  }
+
+  /**
+   * Runs a single failover.
+   *
+   * @param run the run number, used to seed the network
+   */
+  void run(int run) throws Exception {
+    TestNetwork network = new TestNetwork(run)
+        .setConditions(LinkConditions.builder().withLatency(latency).build())
+        .setTimeout(timeout);
+    Queue<long[]> appends = new ConcurrentLinkedQueue<>();
+    Queue<long[]> deliveries = new ConcurrentLinkedQueue<>();
+    try (LogCluster cluster = new LogCluster(nodes, network, builder -> builder
+        .withReplicationStrategy(replicationStrategy))) {
+      cluster.createClient().consumer().consume(1, record -> {
+        long sequence = record.getValue().asReadOnlyByteBuffer().getLong();
+        deliveries.add(new long[]{sequence, System.nanoTime()});
+      }).join();
+
+      DistributedLogProducer producer = cluster.createClient().producer();
+      long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+      long startTime = System.nanoTime();
+      long failTime = startTime + warmup.toNanos();
+      long endTime = failTime + observe.toNanos();
+      Thread thread = new Thread(() -> {
+        long sendTime = startTime;
+        for (long sequence = 1; sendTime < endTime; sequence++) {
+          sendTime += interval;
+          LockSupport.parkNanos(sendTime - System.nanoTime());
+          byte[] value = new byte[valueSize];
+          ByteBuffer.wrap(value).putLong(sequence);
+          long appendTime = sendTime;
+          long appendSequence = sequence;
+          producer.append(value).whenComplete((index, error) ->
+              appends.add(new long[]{appendSequence, appendTime, System.nanoTime(), error == null ? 1 : 0}));
+        }
+      }, "log-failover-producer");
+      thread.start();
+
+      TimeUnit.NANOSECONDS.sleep(failTime - System.nanoTime());
+      String leader = cluster.serverIds().get(0);
+      if (failure == Failure.KILL) {
+        DistributedLogServer server = cluster.servers().remove(0);
+        server.stop();
+      } else {
+        network.isolate(leader);
+        cluster.termProviderFactory().isolate(leader);
+      }
+      TimeUnit.NANOSECONDS.sleep(detection.toNanos());
+      List<String> servers = cluster.serverIds();
+      cluster.termProviderFactory().elect(servers.get(1), new ArrayList<>(servers.subList(2, servers.size())));
+
+      thread.join();
+      TimeUnit.NANOSECONDS.sleep(timeout.toNanos() + TimeUnit.SECONDS.toNanos(1));
+      record(appends, deliveries, failTime);
+    }
+  }
+
+  /**
+   * Records the measurements of a run.
+   */
+  private synchronized void record(Queue<long[]> appends, Queue<long[]> deliveries, long failTime) {
+    runs++;
+
+    // Time to the first successful append sent after the failure, and append throughput before and after it.
+    long firstAppendTime = Long.MAX_VALUE;
+    long baseline = 0;
+    Map<Long, Integer> windows = new HashMap<>();
+    Set<Long> acknowledged = new HashSet<>();
+    for (long[] append : appends) {
+      if (append[3] == 0) {
+        failed++;
+        continue;
+      }
+      acknowledged.add(append[0]);
+      if (append[1] >= failTime) {
+        firstAppendTime = Math.min(firstAppendTime, append[2]);
+      }
+      if (append[2] < failTime && append[2] >= failTime - warmup.toNanos() / 2) {
+        baseline++;
+      } else if (append[2] >= failTime) {
+        windows.merge((append[2] - failTime) / WINDOW, 1, Integer::sum);
+      }
+    }
+    if (firstAppendTime == Long.MAX_VALUE) {
+      unrecovered++;
+    } else {
+      firstAppend.record(firstAppendTime - failTime);
+    }
+
+    double expected = baseline / (warmup.toNanos() / 2d / WINDOW) * RECOVERED_THROUGHPUT;
+    long windowCount = observe.toNanos() / WINDOW;
+    long window = 0;
+    while (window < windowCount && windows.getOrDefault(window, 0) < expected) {
+      window++;
+    }
+    if (window < windowCount) {
+      recovery.record((window + 1) * WINDOW);
+    } else {
+      throttled++;
+    }
+
+    // The longest pause in deliveries across the failure, duplicate deliveries and lost records.
+    Set<Long> delivered = new HashSet<>();
+    long lastDelivery = 0;
+    long maxGap = 0;
+    for (long[] delivery : deliveries) {
+      if (!delivered.add(delivery[0])) {
+        duplicates++;
+      }
+      if (delivery[1] >= failTime && lastDelivery > 0) {
+        maxGap = Math.max(maxGap, delivery[1] - Math.max(lastDelivery, failTime));
+      }
+      lastDelivery = delivery[1];
+    }
+    resumeGap.record(maxGap);
+    acknowledged.removeAll(delivered);
+    lost += acknowledged.size();
+  }
+
+  /**
+   * Returns the configuration and measurement distributions as a JSON object.
+   */
+  private String toJson() {
+    return String.format(Locale.ROOT, "{\"nodes\":%d,\"replication\":\"%s\",\"failure\":\"%s\",\"rate\":%d,"
+            + "\"valueSize\":%d,\"detectionMs\":%d,\"latencyUs\":%d,\"runs\":%d,\"firstAppend\":%s,\"recovery\":%s,"
+            + "\"resumeGap\":%s,\"unrecovered\":%d,\"throttled\":%d,\"duplicates\":%d,\"failed\":%d,\"lost\":%d}",
+        nodes, replicationStrategy, failure, rate, valueSize, detection.toMillis(), latency.toNanos() / 1000, runs,
+        toJson(firstAppend.snapshot()), toJson(recovery.snapshot()), toJson(resumeGap.snapshot()), unrecovered,
+        throttled, duplicates, failed, lost);
+  }
+
+  /**
+   * Returns the distribution in milliseconds of the given histogram as a JSON object.
+   */
+  private static String toJson(HistogramSnapshot snapshot) {
+    return String.format(Locale.ROOT, "{\"count\":%d,\"min\":%.2f,\"p50\":%.2f,\"p90\":%.2f,\"p99\":%.2f,\"max\":%.2f}",
+        snapshot.count(), snapshot.min() / 1e6, snapshot.percentile(50) / 1e6, snapshot.percentile(90) / 1e6,
+        snapshot.percentile(99) / 1e6, snapshot.max() / 1e6);
+  }
+}
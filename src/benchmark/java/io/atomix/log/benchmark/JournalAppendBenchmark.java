@@ -0,0 +1,131 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.log.benchmark;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.google.protobuf.ByteString;
+import io.atomix.protocols.log.LogEntry;
+import io.atomix.protocols.log.protocol.DistributedLogCodec;
+import io.atomix.storage.StorageLevel;
+import io.atomix.storage.journal.JournalWriter;
+import io.atomix.storage.journal.SegmentedJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of appending entries to a single node's journal as the leader does.
+ * <p>
+ * Each invocation appends a batch of entries and commits the last entry in the batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JournalAppendBenchmark {
+  @Param({"DISK", "MAPPED"})
+  public StorageLevel storageLevel;
+
+  @Param({"128", "1024", "65536"})
+  public int valueSize;
+
+  @Param({"1", "32", "256"})
+  public int batchSize;
+
+  private Path directory;
+  private SegmentedJournal<LogEntry> journal;
+  private JournalWriter<LogEntry> writer;
+  private ByteString value;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("atomix-log-journal");
+    journal = SegmentedJournal.<LogEntry>builder()
+        .withName("benchmark")
+        .withDirectory(directory.toFile())
+        .withStorageLevel(storageLevel)
+        .withMaxSegmentSize(1024 * 1024 * 32)
+        .withMaxEntrySize(1024 * 1024)
+        .withCodec(new DistributedLogCodec())
+        .build();
+    writer = journal.writer();
+    byte[] bytes = new byte[valueSize];
+    ThreadLocalRandom.current().nextBytes(bytes);
+    value = ByteString.copyFrom(bytes);
+  }
+
+  @Benchmark
+  public long append(EntryCounter counter) {
+    long timestamp = System.currentTimeMillis();
+    for (int i = 0; i < batchSize; i++) {
+      writer.append(LogEntry.newBuilder()
+          .setTerm(1)
+          .setTimestamp(timestamp)
+          .setValue(value)
+          .build());
+    }
+    long index = writer.getLastIndex();
+    writer.commit(index);
+    counter.entries += batchSize;
+    return index;
+  }
+
+  /**
+   * Removes written segments between iterations to bound disk usage.
+   */
+  @TearDown(Level.Iteration)
+  public void compact() {
+    journal.compact(writer.getLastIndex());
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    journal.close();
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.log.benchmark;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import io.atomix.log.protocol.LinkConditions;
+import io.atomix.log.protocol.TestNetwork;
+import io.atomix.protocols.log.DistributedLogProducer;
+import io.atomix.protocols.log.ReplicationStrategy;
+import io.atomix.protocols.log.StorageLevel;
+import io.atomix.protocols.log.metrics.Counter;
+import io.atomix.protocols.log.metrics.Histogram;
+import io.atomix.protocols.log.metrics.HistogramSnapshot;
+
+/**
+ * End-to-end load generator.
+ * <p>
+ * Starts a cluster in a single JVM over the in-memory test protocol, drives it with a configurable number of producers
+ * and consumers, and prints one JSON object per run with the append and produce-to-consume throughput and latency.
+ * Producers run open loop at a fixed rate, and latencies are measured from the time each append was scheduled to be
+ * sent so that stalls are not hidden by the producers slowing down. Options take the form {@code --name=value}, and
+ * the {@code replication} and {@code storage} options accept comma-separated lists to run every combination:
+ * <pre>
+ *   --nodes=3 --producers=4 --consumers=2 --rate=5000 --value-size=1024 --warmup=5 --duration=30
+ *   --replication=SYNCHRONOUS,ASYNCHRONOUS --storage=DISK,MAPPED --max-in-flight=1000
+ *   --latency-us=500 --jitter-us=100 --bandwidth=125000000
+ * </pre>
+ * Rates are appends per second per producer; a rate of {@code 0} runs each producer closed loop limited only by
+ * {@code max-in-flight}. The {@code latency-us}, {@code jitter-us} and {@code bandwidth} (bytes per second) options
+ * apply to every link of the emulated network.
+ */
+public class LoadGenerator {
+  private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(10);
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = parseOptions(args);
+    for (String replication : options.getOrDefault("replication", "SYNCHRONOUS").split(",")) {
+      for (String storage : options.getOrDefault("storage", "DISK").split(",")) {
+        LoadGenerator generator = new LoadGenerator(
+            Integer.parseInt(options.getOrDefault("nodes", "3")),
+            ReplicationStrategy.valueOf(replication.trim().toUpperCase()),
+            StorageLevel.valueOf(storage.trim().toUpperCase()),
+            Integer.parseInt(options.getOrDefault("producers", "1")),
+            Integer.parseInt(options.getOrDefault("consumers", "1")),
+            Integer.parseInt(options.getOrDefault("rate", "1000")),
+            Integer.parseInt(options.getOrDefault("value-size", "1024")),
+            Integer.parseInt(options.getOrDefault("max-in-flight", "1000")),
+            Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "5"))),
+            Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30"))),
+            LinkConditions.builder()
+                .withLatency(Duration.ofNanos(Long.parseLong(options.getOrDefault("latency-us", "0")) * 1000))
+                .withJitter(Duration.ofNanos(Long.parseLong(options.getOrDefault("jitter-us", "0")) * 1000))
+                .withBandwidth(Long.parseLong(options.getOrDefault("bandwidth", "0")))
+                .build());
+        System.out.println(generator.run());
+      }
+    }
+    System.exit(0);
+  }
+
+  /**
+   * Parses {@code --name=value} options.
+   */
+  private static Map<String, String> parseOptions(String[] args) {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      int separator = arg.indexOf('=');
+      if (!arg.startsWith("--") || separator < 0) {
+        throw new IllegalArgumentException("Invalid option " + arg);
+      }
+      options.put(arg.substring(2, separator), arg.substring(separator + 1));
+    }
+    return options;
+  }
+
+  private final int nodes;
+  private final ReplicationStrategy replicationStrategy;
+  private final StorageLevel storageLevel;
+  private final int producers;
+  private final int consumers;
+  private final int rate;
+  private final int valueSize;
+  private final int maxInFlight;
+  private final Duration warmup;
+  private final Duration duration;
+  private final LinkConditions linkConditions;
+  private final Histogram appendLatency = new Histogram();
+  private final Histogram endToEndLatency = new Histogram();
+  private final Counter appendErrors = new Counter();
+  private final Counter sendDelays = new Counter();
+  private volatile long measureStart;
+  private volatile long measureEnd;
+  private volatile boolean running;
+
+  LoadGenerator(
+      int nodes,
+      ReplicationStrategy replicationStrategy,
+      StorageLevel storageLevel,
+      int producers,
+      int consumers,
+      int rate,
+      int valueSize,
+      int maxInFlight,
+      Duration warmup,
+      Duration duration,
+      LinkConditions linkConditions) {
+    this.nodes = nodes;
+    this.replicationStrategy = replicationStrategy;
+    this.storageLevel = storageLevel;
+    this.producers = producers;
+    this.consumers = consumers;
+    this.rate = rate;
+    this.valueSize = Math.max(valueSize, Long.BYTES);
+    this.maxInFlight = maxInFlight;
+    this.warmup = warmup;
+    this.duration = duration;
+    this.linkConditions = linkConditions;
+  }
+
+  /**
+   * Runs the load and returns the results as a JSON object.
+   *
+   * @return the results as a JSON object
+   */
+  String run() throws Exception {
+    TestNetwork network = new TestNetwork().setConditions(linkConditions);
+    try (LogCluster cluster = new LogCluster(nodes, network, builder -> builder
+        .withReplicationStrategy(replicationStrategy)
+        .withStorageLevel(storageLevel)
+        .withMaxLogSize(1024L * 1024 * 1024))) {
+      for (int i = 0; i < consumers; i++) {
+        cluster.createClient().consumer().consume(1, record -> {
+          long now = System.nanoTime();
+          long sendTime = record.getValue().asReadOnlyByteBuffer().getLong();
+          if (sendTime >= measureStart && sendTime < measureEnd) {
+            endToEndLatency.record(now - sendTime);
+          }
+        }).join();
+      }
+
+      long startTime = System.nanoTime();
+      measureStart = startTime + warmup.toNanos();
+      measureEnd = measureStart + duration.toNanos();
+      running = true;
+      List<Semaphore> inFlight = new ArrayList<>();
+      List<Thread> threads = new ArrayList<>();
+      for (int i = 0; i < producers; i++) {
+        DistributedLogProducer producer = cluster.createClient().producer();
+        Semaphore permits = new Semaphore(maxInFlight);
+        Thread thread = new Thread(() -> produce(producer, permits, startTime), "log-load-producer-" + i);
+        thread.start();
+        inFlight.add(permits);
+        threads.add(thread);
+      }
+
+      TimeUnit.NANOSECONDS.sleep(measureEnd - System.nanoTime());
+      running = false;
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      for (Semaphore permits : inFlight) {
+        permits.tryAcquire(maxInFlight, DRAIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+      }
+
+      // Give consumers time to receive the last committed records.
+      long expected = appendLatency.snapshot().count() * consumers;
+      long deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+      while (endToEndLatency.snapshot().count() < expected && System.nanoTime() < deadline) {
+        TimeUnit.MILLISECONDS.sleep(100);
+      }
+      return toJson();
+    }
+  }
+
+  /**
+   * Appends records at the configured rate until the run ends.
+   */
+  private void produce(DistributedLogProducer producer, Semaphore permits, long startTime) {
+    long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+    long sendTime = startTime;
+    while (running) {
+      if (interval > 0) {
+        sendTime += interval;
+        long delay = sendTime - System.nanoTime();
+        if (delay > 0) {
+          LockSupport.parkNanos(delay);
+        }
+      }
+      permits.acquireUninterruptibly();
+      if (interval == 0) {
+        sendTime = System.nanoTime();
+      } else if (System.nanoTime() - sendTime > interval) {
+        sendDelays.increment();
+      }
+
+      byte[] value = new byte[valueSize];
+      ThreadLocalRandom.current().nextBytes(value);
+      ByteBuffer.wrap(value).putLong(sendTime);
+      long appendTime = sendTime;
+      producer.append(value).whenComplete((index, error) -> {
+        long now = System.nanoTime();
+        permits.release();
+        if (error != null) {
+          appendErrors.increment();
+        } else if (appendTime >= measureStart && appendTime < measureEnd) {
+          appendLatency.record(now - appendTime);
+        }
+      });
+    }
+  }
+
+  /**
+   * Returns the run configuration and results as a JSON object.
+   */
+  private String toJson() {
+    HistogramSnapshot appends = appendLatency.snapshot();
+    HistogramSnapshot records = endToEndLatency.snapshot();
+    double seconds = duration.toNanos() / 1e9;
+    return String.format(Locale.ROOT, "{\"nodes\":%d,\"replication\":\"%s\",\"storage\":\"%s\",\"producers\":%d,"
+            + "\"consumers\":%d,\"rate\":%d,\"valueSize\":%d,\"duration\":%d,\"append\":%s,\"endToEnd\":%s,"
+            + "\"latencyUs\":%d,\"jitterUs\":%d,\"bandwidth\":%d,\"errors\":%d,\"delayedSends\":%d}",
+        nodes, replicationStrategy, storageLevel, producers, consumers, rate, valueSize, duration.getSeconds(),
+        toJson(appends, seconds), toJson(records, seconds), linkConditions.latency().toNanos() / 1000,
+        linkConditions.jitter().toNanos() / 1000, linkConditions.bandwidth(), appendErrors.get(), sendDelays.get());
+  }
+
+  /**
+   * Returns the throughput and latency percentiles in microseconds of the given histogram as a JSON object.
+   */
+  private static String toJson(HistogramSnapshot snapshot, double seconds) {
+    return String.format(Locale.ROOT, "{\"count\":%d,\"throughput\":%.1f,\"p50\":%.1f,\"p99\":%.1f,\"p999\":%.1f,"
+            + "\"max\":%.1f}",
+        snapshot.count(), snapshot.count() / seconds, snapshot.percentile(50) / 1e3, snapshot.percentile(99) / 1e3,
+        snapshot.percentile(99.9) / 1e3, snapshot.max() / 1e3);
+  }
+}
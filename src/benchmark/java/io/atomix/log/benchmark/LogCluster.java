@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.log.benchmark;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import io.atomix.log.TestTermProviderFactory;
+import io.atomix.log.protocol.TestLogProtocolFactory;
+import io.atomix.log.protocol.TestNetwork;
+import io.atomix.protocols.log.DistributedLogClient;
+import io.atomix.protocols.log.DistributedLogServer;
+
+/**
+ * Single JVM distributed log cluster for benchmarks.
+ */
+public class LogCluster implements AutoCloseable {
+  private final TestLogProtocolFactory protocolFactory;
+  private final TestTermProviderFactory termProviderFactory = new TestTermProviderFactory();
+  private final Path directory;
+  private final List<String> serverIds = new ArrayList<>();
+  private final List<DistributedLogServer> servers = new ArrayList<>();
+  private final List<DistributedLogClient> clients = new ArrayList<>();
+  private int memberId;
+
+  public LogCluster(int nodes) throws IOException {
+    this(nodes, builder -> {
+    });
+  }
+
+  public LogCluster(int nodes, Consumer<DistributedLogServer.Builder> config) throws IOException {
+    this(nodes, new TestNetwork(), config);
+  }
+
+  public LogCluster(int nodes, TestNetwork network, Consumer<DistributedLogServer.Builder> config) throws IOException {
+    this.protocolFactory = new TestLogProtocolFactory(network);
+    this.directory = Files.createTempDirectory("atomix-log-benchmark");
+    for (int i = 0; i < nodes; i++) {
+      String memberId = nextMemberId();
+      DistributedLogServer.Builder builder = DistributedLogServer.builder()
+          .withServerId(memberId)
+          .withProtocol(protocolFactory.newServerProtocol(memberId))
+          .withTermProvider(termProviderFactory.newTermProvider(memberId))
+          .withDirectory(directory.resolve(memberId).toFile());
+      config.accept(builder);
+      DistributedLogServer server = builder.build();
+      server.start().join();
+      serverIds.add(memberId);
+      servers.add(server);
+    }
+  }
+
+  /**
+   * Returns the next unique member identifier.
+   *
+   * @return the next unique member identifier
+   */
+  private String nextMemberId() {
+    return String.valueOf(++memberId);
+  }
+
+  /**
+   * Returns the cluster's protocol factory.
+   *
+   * @return the cluster's protocol factory
+   */
+  public TestLogProtocolFactory protocolFactory() {
+    return protocolFactory;
+  }
+
+  /**
+   * Returns the cluster's term provider factory.
+   *
+   * @return the cluster's term provider factory
+   */
+  public TestTermProviderFactory termProviderFactory() {
+    return termProviderFactory;
+  }
+
+  /**
+   * Returns the identifiers of the cluster's servers in the order in which they joined.
+   *
+   * @return the identifiers of the cluster's servers
+   */
+  public List<String> serverIds() {
+    return serverIds;
+  }
+
+  /**
+   * Returns the cluster's servers.
+   *
+   * @return the cluster's servers
+   */
+  public List<DistributedLogServer> servers() {
+    return servers;
+  }
+
+  /**
+   * Creates and connects a new client.
+   *
+   * @return the connected client
+   */
+  public DistributedLogClient createClient() {
+    String memberId = nextMemberId();
+    DistributedLogClient client = DistributedLogClient.builder()
+        .withClientId(memberId)
+        .withProtocol(protocolFactory.newClientProtocol(memberId))
+        .withTermProvider(termProviderFactory.newTermProvider(memberId))
+        .build();
+    client.connect().join();
+    clients.add(client);
+    return client;
+  }
+
+  @Override
+  public void close() throws IOException {
+    clients.forEach(client -> client.close().join());
+    servers.forEach(server -> server.stop().exceptionally(e -> null).join());
+    protocolFactory.network().close();
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.log.benchmark;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.google.protobuf.ByteString;
+import io.atomix.log.TestTermProviderFactory;
+import io.atomix.log.protocol.TestLogProtocolFactory;
+import io.atomix.protocols.log.DistributedLogServer;
+import io.atomix.protocols.log.LogEntry;
+import io.atomix.protocols.log.protocol.DistributedLogCodec;
+import io.atomix.storage.journal.JournalWriter;
+import io.atomix.storage.journal.SegmentedJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time taken to restart a server over a large synthetic journal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class RecoveryBenchmark {
+  private static final String SERVER_ID = "1";
+  private static final int PRODUCERS = 16;
+
+  @Param({"100000", "1000000"})
+  public int entries;
+
+  @Param({"1024"})
+  public int valueSize;
+
+  private Path directory;
+  private DistributedLogServer server;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    try {
+      directory = Files.createTempDirectory("atomix-log-recovery");
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+
+    byte[] bytes = new byte[valueSize];
+    ThreadLocalRandom.current().nextBytes(bytes);
+    ByteString value = ByteString.copyFrom(bytes);
+
+    SegmentedJournal<LogEntry> journal = SegmentedJournal.<LogEntry>builder()
+        .withName(SERVER_ID)
+        .withDirectory(directory.toFile())
+        .withCodec(new DistributedLogCodec())
+        .build();
+    JournalWriter<LogEntry> writer = journal.writer();
+    for (int i = 0; i < entries; i++) {
+      writer.append(LogEntry.newBuilder()
+          .setTerm(1)
+          .setTimestamp(System.currentTimeMillis())
+          .setValue(value)
+          .setProducerId(String.valueOf(i % PRODUCERS))
+          .setSequence(i / PRODUCERS + 1)
+          .build());
+    }
+    writer.commit(writer.getLastIndex());
+    writer.flush();
+    journal.close();
+
+    // Start and stop the server once to write the initial checkpoint.
+    server = newServer();
+    server.start().join();
+    server.stop().join();
+  }
+
+  /**
+   * Creates a new single node server over the synthetic journal.
+   */
+  private DistributedLogServer newServer() {
+    return DistributedLogServer.builder()
+        .withServerId(SERVER_ID)
+        .withProtocol(new TestLogProtocolFactory().newServerProtocol(SERVER_ID))
+        .withTermProvider(new TestTermProviderFactory().newTermProvider(SERVER_ID))
+        .withDirectory(directory.toFile())
+        .build();
+  }
+
+  @Benchmark
+  public DistributedLogServer recover() {
+    server = newServer();
+    return server.start().join();
+  }
+
+  @TearDown(Level.Invocation)
+  public void stop() {
+    server.stop().join();
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+}
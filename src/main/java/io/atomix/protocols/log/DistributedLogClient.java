@@ -15,11 +15,16 @@
  */
 package io.atomix.protocols.log;
 
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import io.atomix.protocols.log.impl.DefaultDistributedLogClient;
+import io.atomix.protocols.log.metrics.MetricsRegistry;
 import io.atomix.protocols.log.protocol.LogClientProtocol;
 import io.atomix.service.client.LogClient;
+import io.atomix.service.protocol.LogRecord;
 import io.atomix.utils.concurrent.ThreadContextFactory;
 import io.atomix.utils.concurrent.ThreadModel;
 
@@ -40,6 +45,76 @@ public interface DistributedLogClient extends LogClient {
     return new DefaultDistributedLogClient.Builder();
   }
 
+  /**
+   * Returns the client ID.
+   *
+   * @return the client ID
+   */
+  String clientId();
+
+  @Override
+  DistributedLogProducer producer();
+
+  /**
+   * Fetches a contiguous range of committed records starting at the given index.
+   * <p>
+   * Records are fetched from a follower where possible, and from the leader if no follower responds or a follower has
+   * no committed records at the index. Records are fetched until the next record would exceed the given size, but at
+   * least one record is fetched if any is committed. If records preceding the index have been compacted, records are
+   * fetched from the first index retained.
+   *
+   * @param index    the index of the first record to fetch
+   * @param maxBytes the maximum size of the values of the fetched records
+   * @return a future to be completed with the fetched records, or an empty list if no records are committed at or
+   * after the index
+   */
+  CompletableFuture<List<LogRecord>> fetch(long index, int maxBytes);
+
+  /**
+   * Returns an iterator over the committed records starting at the given index.
+   * <p>
+   * Records are fetched in chunks of up to the given size from a single member while it responds, and each chunk is
+   * fetched while the previous chunk is iterated. Iteration ends once no more records are committed. The iterator's
+   * methods block while a chunk is fetched, and throw a {@link DistributedLogException} if no member responds.
+   *
+   * @param index     the index of the first record to iterate
+   * @param fetchSize the maximum size of the values of each chunk of records
+   * @return an iterator over the committed records starting at the index
+   */
+  Iterator<LogRecord> iterator(long index, int fetchSize);
+
+  /**
+   * Splits the committed records between the given indexes into contiguous partitions of equal size.
+   * <p>
+   * The committed range is read from the leader, and the requested range is clamped to the first index retained and
+   * the commit index. Partitions are spread across the leader and followers, so processing them concurrently reads
+   * from every member.
+   *
+   * @param fromIndex  the index of the first record to partition
+   * @param toIndex    the index of the last record to partition, or {@code 0} to partition up to the commit index
+   * @param partitions the number of partitions
+   * @return a future to be completed with the partitions in index order, or an empty list if no records are
+   * committed in the range
+   * @throws IllegalArgumentException if the number of partitions is not positive
+   */
+  CompletableFuture<List<DistributedLogPartition>> partition(long fromIndex, long toIndex, int partitions);
+
+  /**
+   * Returns an iterator over the committed records between the given indexes, in order.
+   * <p>
+   * The committed range is read from the leader when the iterator is first used. The range is split into chunks that
+   * are fetched concurrently from the leader and followers, up to the given number of chunks at once, while records
+   * are iterated in order. The iterator's methods block while a chunk is fetched, and throw a
+   * {@link DistributedLogException} if no member responds.
+   *
+   * @param fromIndex   the index of the first record to iterate
+   * @param toIndex     the index of the last record to iterate, or {@code 0} to iterate up to the commit index
+   * @param parallelism the maximum number of chunks to fetch at once
+   * @return an iterator over the committed records between the indexes
+   * @throws IllegalArgumentException if the parallelism is not positive
+   */
+  Iterator<LogRecord> replay(long fromIndex, long toIndex, int parallelism);
+
   /**
    * Connects the log session.
    *
@@ -47,6 +122,13 @@ public interface DistributedLogClient extends LogClient {
    */
   CompletableFuture<DistributedLogClient> connect();
 
+  /**
+   * Returns the client metrics registry.
+   *
+   * @return the client metrics registry
+   */
+  MetricsRegistry metrics();
+
   /**
    * Closes the log session.
    *
@@ -58,12 +140,18 @@ public interface DistributedLogClient extends LogClient {
    * Distributed log client builder.
    */
   abstract class Builder implements io.atomix.utils.Builder<DistributedLogClient> {
+    private static final int DEFAULT_MAX_RETRIES = 5;
+    private static final Duration DEFAULT_RETRY_DELAY = Duration.ofMillis(10);
+
     protected String clientId;
     protected LogClientProtocol protocol;
     protected TermProvider termProvider;
     protected ThreadModel threadModel = ThreadModel.SHARED_THREAD_POOL;
     protected int threadPoolSize = Math.max(Math.min(Runtime.getRuntime().availableProcessors() * 2, 16), 4);
     protected ThreadContextFactory threadContextFactory;
+    protected int maxRetries = DEFAULT_MAX_RETRIES;
+    protected Duration retryDelay = DEFAULT_RETRY_DELAY;
+    protected MetricsRegistry metricsRegistry = new MetricsRegistry();
 
     /**
      * Sets the client ID.
@@ -135,5 +223,47 @@ public interface DistributedLogClient extends LogClient {
       this.threadContextFactory = checkNotNull(threadContextFactory, "threadContextFactory cannot be null");
       return this;
     }
+
+    /**
+     * Sets the maximum number of times an append rejected by a non-leader is retried.
+     *
+     * @param maxRetries the maximum number of append retries
+     * @return the client builder
+     * @throws IllegalArgumentException if the number of retries is negative
+     */
+    public Builder withMaxRetries(int maxRetries) {
+      checkArgument(maxRetries >= 0, "maxRetries cannot be negative");
+      this.maxRetries = maxRetries;
+      return this;
+    }
+
+    /**
+     * Sets the initial delay between append retries.
+     * <p>
+     * Appends redirected to a newer leader are retried immediately. Otherwise the delay is doubled on each retry.
+     *
+     * @param retryDelay the initial delay between append retries
+     * @return the client builder
+     * @throws NullPointerException if the delay is null
+     */
+    public Builder withRetryDelay(Duration retryDelay) {
+      this.retryDelay = checkNotNull(retryDelay, "retryDelay cannot be null");
+      return this;
+    }
+
+    /**
+     * Sets the registry to which to record client metrics.
+     * <p>
+     * Client metrics are tagged with the client ID, so a client may share a registry with other clients and servers.
+     * By default, each client records metrics to its own registry.
+     *
+     * @param metricsRegistry the metrics registry
+     * @return the client builder
+     * @throws NullPointerException if the registry is null
+     */
+    public Builder withMetricsRegistry(MetricsRegistry metricsRegistry) {
+      this.metricsRegistry = checkNotNull(metricsRegistry, "metricsRegistry cannot be null");
+      return this;
+    }
   }
 }
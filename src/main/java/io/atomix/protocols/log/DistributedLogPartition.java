@@ -0,0 +1,73 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import io.atomix.service.protocol.LogRecord;
+
+/**
+ * Contiguous range of committed records.
+ * <p>
+ * Partitions are independent of each other, so they may be processed concurrently, for example by separate fork-join
+ * tasks. Each partition fetches its records from its own member first, falling back to the other members and finally
+ * the leader, so partitions processed concurrently read from all members at once.
+ */
+public interface DistributedLogPartition extends Iterable<LogRecord> {
+
+  /**
+   * Returns the index of the first record in the partition.
+   *
+   * @return the index of the first record in the partition
+   */
+  long firstIndex();
+
+  /**
+   * Returns the index of the last record in the partition.
+   *
+   * @return the index of the last record in the partition
+   */
+  long lastIndex();
+
+  /**
+   * Returns the member from which the partition's records are fetched first.
+   *
+   * @return the member from which the partition's records are fetched first
+   */
+  String member();
+
+  /**
+   * Fetches all records in the partition.
+   *
+   * @return a future to be completed with the records in the partition
+   */
+  CompletableFuture<List<LogRecord>> fetch();
+
+  /**
+   * Returns an iterator over the records in the partition.
+   * <p>
+   * Records are fetched in chunks of the servers' maximum fetch size, and each chunk is fetched while the previous
+   * chunk is iterated. The iterator's methods block while a chunk is fetched, and throw a
+   * {@link DistributedLogException} if no member responds.
+   *
+   * @return an iterator over the records in the partition
+   */
+  @Override
+  Iterator<LogRecord> iterator();
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+import com.google.protobuf.ByteString;
+import io.atomix.service.client.LogProducer;
+
+/**
+ * Distributed log producer.
+ * <p>
+ * In addition to the {@code byte[]} based {@link LogProducer} API, the distributed log producer can append values
+ * directly from {@link ByteBuffer}s and {@link ByteString}s. Buffers are wrapped rather than copied, so the contents
+ * of a buffer must not be modified until the future returned by the append has been completed.
+ */
+public interface DistributedLogProducer extends LogProducer {
+
+  /**
+   * Appends the remaining bytes of the given buffer to the log.
+   * <p>
+   * The buffer's position is not modified.
+   *
+   * @param value the buffer to append
+   * @return a future to be completed with the index of the appended entry
+   */
+  CompletableFuture<Long> append(ByteBuffer value);
+
+  /**
+   * Appends the remaining bytes of the given buffers to the log as a single entry.
+   * <p>
+   * The buffers are gathered into a single entry value in order without being copied. The buffers' positions are not
+   * modified.
+   *
+   * @param values the buffers to append
+   * @return a future to be completed with the index of the appended entry
+   */
+  CompletableFuture<Long> append(ByteBuffer[] values);
+
+  /**
+   * Appends the given value to the log.
+   *
+   * @param value the value to append
+   * @return a future to be completed with the index of the appended entry
+   */
+  CompletableFuture<Long> append(ByteString value);
+
+  /**
+   * Appends the given value to the log, completing the append once it reaches the given durability.
+   * <p>
+   * Appends with a durability other than {@link Durability#DEFAULT} may complete before the entry is visible to
+   * consumers, which read entries only once they're committed according to the server's replication strategy.
+   *
+   * @param value      the value to append
+   * @param durability the durability the append must reach before it is completed
+   * @return a future to be completed with the index of the appended entry
+   */
+  CompletableFuture<Long> append(ByteString value, Durability durability);
+
+}
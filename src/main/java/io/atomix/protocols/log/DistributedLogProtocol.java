@@ -18,6 +18,7 @@ package io.atomix.protocols.log;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
 
 import com.google.common.base.Strings;
@@ -78,9 +79,12 @@ public class DistributedLogProtocol implements LogProtocol {
 
   @Override
   public CompletableFuture<Void> start() {
+    // Share the server's member ID with the protocol so the client's requests to the local server skip gRPC.
     GrpcProtocol protocol = new GrpcProtocol(
         managementService.getServiceProvider().getFactory(DistributedLogServiceGrpc::newStub),
-        managementService.getServiceRegistry());
+        managementService.getServiceRegistry(),
+        Strings.emptyToNull(config.getMemberId()),
+        config.getStreams());
     return startServer(protocol).thenCompose(v -> startClient(protocol));
   }
 
@@ -95,8 +99,14 @@ public class DistributedLogProtocol implements LogProtocol {
   }
 
   private DistributedLogServer buildServer(LogServerProtocol protocol) {
-    return DistributedLogServer.builder()
+    DistributedLogServer.Builder builder = DistributedLogServer.builder();
+    if (!Strings.isNullOrEmpty(config.getMemberId())) {
+      builder.withServerId(config.getMemberId());
+    }
+    return builder
         .withProtocol(protocol)
+        .withAckMode(config.getAckMode())
+        .withInstallThreshold(config.getInstallThreshold() > 0 ? config.getInstallThreshold() : 100_000)
         .withDirectory(!Strings.isNullOrEmpty(config.getStorage().getDirectory()) ? config.getStorage().getDirectory() : ".data")
         .withStorageLevel(StorageLevel.valueOf(config.getStorage().getLevel().name()))
         .withMaxSegmentSize(config.getStorage().getSegmentSize() > 0
@@ -106,6 +116,16 @@ public class DistributedLogProtocol implements LogProtocol {
             ? config.getStorage().getMaxEntrySize()
             : 1024 * 1024)
         .withFlushOnCommit(config.getStorage().getFlushOnCommit())
+        .withCompression(config.getStorage().getCompression())
+        .withCompressionThreshold(config.getStorage().getCompressionThreshold() > 0
+            ? config.getStorage().getCompressionThreshold()
+            : 1024)
+        .withFlushInterval(Duration.ofSeconds(
+            config.getStorage().getFlushInterval().getSeconds(),
+            config.getStorage().getFlushInterval().getNanos()))
+        .withFlushSize(config.getStorage().getFlushSize() > 0
+            ? config.getStorage().getFlushSize()
+            : 1024 * 1024)
         .withThreadContextFactory(managementService.getThreadService().getFactory())
         .build();
   }
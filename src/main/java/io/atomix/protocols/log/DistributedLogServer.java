@@ -19,6 +19,7 @@ import java.io.File;
 import java.time.Duration;
 
 import io.atomix.protocols.log.impl.DefaultDistributedLogServer;
+import io.atomix.protocols.log.metrics.MetricsRegistry;
 import io.atomix.protocols.log.protocol.LogServerProtocol;
 import io.atomix.utils.Managed;
 import io.atomix.utils.concurrent.ThreadContextFactory;
@@ -69,6 +70,13 @@ public interface DistributedLogServer extends Managed<DistributedLogServer> {
    */
   Role getRole();
 
+  /**
+   * Returns the server metrics registry.
+   *
+   * @return the server metrics registry
+   */
+  MetricsRegistry metrics();
+
   /**
    * Log server builder
    */
@@ -77,12 +85,20 @@ public interface DistributedLogServer extends Managed<DistributedLogServer> {
     private static final String DEFAULT_DIRECTORY = System.getProperty("user.dir");
     private static final int DEFAULT_REPLICATION_FACTOR = 2;
     private static final ReplicationStrategy DEFAULT_REPLICATION_STRATEGY = ReplicationStrategy.SYNCHRONOUS;
+    private static final AckMode DEFAULT_ACK_MODE = AckMode.WRITTEN;
+    private static final long DEFAULT_INSTALL_THRESHOLD = 100_000;
     private static final int DEFAULT_MAX_SEGMENT_SIZE = 1024 * 1024 * 32;
     private static final int DEFAULT_MAX_ENTRY_SIZE = 1024 * 1024;
     private static final boolean DEFAULT_FLUSH_ON_COMMIT = false;
+    private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ZERO;
+    private static final long DEFAULT_FLUSH_SIZE = 1024 * 1024;
     private static final long DEFAULT_MAX_LOG_SIZE = 1024 * 1024 * 1024;
     private static final Duration DEFAULT_MAX_LOG_AGE = null;
+    private static final Duration DEFAULT_SESSION_TIMEOUT = Duration.ofDays(1);
+    private static final Duration DEFAULT_CHECKPOINT_INTERVAL = Duration.ofSeconds(1);
     private static final double DEFAULT_INDEX_DENSITY = .005;
+    private static final Compression DEFAULT_COMPRESSION = Compression.NONE;
+    private static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
 
     protected String serverId = DEFAULT_SERVER_NAME;
     protected LogServerProtocol protocol;
@@ -92,14 +108,23 @@ public interface DistributedLogServer extends Managed<DistributedLogServer> {
     protected ThreadContextFactory threadContextFactory;
     protected int replicationFactor = DEFAULT_REPLICATION_FACTOR;
     protected ReplicationStrategy replicationStrategy = DEFAULT_REPLICATION_STRATEGY;
+    protected AckMode ackMode = DEFAULT_ACK_MODE;
+    protected long installThreshold = DEFAULT_INSTALL_THRESHOLD;
     protected StorageLevel storageLevel = StorageLevel.DISK;
     protected File directory = new File(DEFAULT_DIRECTORY);
     protected int maxSegmentSize = DEFAULT_MAX_SEGMENT_SIZE;
     protected int maxEntrySize = DEFAULT_MAX_ENTRY_SIZE;
     protected double indexDensity = DEFAULT_INDEX_DENSITY;
     protected boolean flushOnCommit = DEFAULT_FLUSH_ON_COMMIT;
+    protected Duration flushInterval = DEFAULT_FLUSH_INTERVAL;
+    protected long flushSize = DEFAULT_FLUSH_SIZE;
     protected long maxLogSize = DEFAULT_MAX_LOG_SIZE;
     protected Duration maxLogAge = DEFAULT_MAX_LOG_AGE;
+    protected Duration sessionTimeout = DEFAULT_SESSION_TIMEOUT;
+    protected Duration checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    protected Compression compression = DEFAULT_COMPRESSION;
+    protected int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+    protected MetricsRegistry metricsRegistry = new MetricsRegistry();
 
     /**
      * Sets the server ID.
@@ -197,6 +222,43 @@ public interface DistributedLogServer extends Managed<DistributedLogServer> {
       return this;
     }
 
+    /**
+     * Sets the guarantee with which the server acknowledges backups while it's a follower.
+     * <p>
+     * {@link AckMode#RECEIVED} acknowledges a batch once it's known to follow the journal and writes it afterwards,
+     * {@link AckMode#WRITTEN} once it's written to the journal, and {@link AckMode#FLUSHED} once it's flushed to disk,
+     * sharing group flushes when group flushing is enabled. The leader commits entries according to the guarantee its
+     * followers acknowledge, while appends requiring entries to be written to followers' journals wait for entries to
+     * be written regardless of the followers' acknowledgement guarantee. By default, backups are acknowledged once
+     * written.
+     *
+     * @param ackMode the backup acknowledgement guarantee
+     * @return the server builder
+     * @throws NullPointerException if the acknowledgement mode is null
+     */
+    public Builder withAckMode(AckMode ackMode) {
+      this.ackMode = checkNotNull(ackMode, "ackMode cannot be null");
+      return this;
+    }
+
+    /**
+     * Sets the number of entries a follower must be behind before closed segments are installed on it.
+     * <p>
+     * A follower more than the given number of entries behind the leader, or missing entries the leader has compacted,
+     * is bootstrapped by sending it the leader's closed journal segment files as they are on disk, replacing the
+     * follower's journal, after which the entries in the leader's open segment are replicated as usual. By default,
+     * segments are installed on followers more than 100000 entries behind.
+     *
+     * @param installThreshold the number of entries a follower must be behind, or {@code 0} to disable installs
+     * @return the server builder
+     * @throws IllegalArgumentException if the threshold is negative
+     */
+    public Builder withInstallThreshold(long installThreshold) {
+      checkArgument(installThreshold >= 0, "installThreshold cannot be negative");
+      this.installThreshold = installThreshold;
+      return this;
+    }
+
     /**
      * Sets the log storage level, returning the builder for method chaining.
      * <p>
@@ -312,6 +374,43 @@ public interface DistributedLogServer extends Managed<DistributedLogServer> {
       return this;
     }
 
+    /**
+     * Enables group flushing with the given interval between flushes.
+     * <p>
+     * When group flushing is enabled, the journal is flushed on a dedicated thread at most once per interval, or sooner
+     * once the flush size has been appended since the last flush, rather than on every commit. Appends are acknowledged
+     * only once their entries have been flushed by the leader, so every acknowledged entry is on disk while many
+     * appends share each flush. Followers acknowledge backups according to their
+     * {@link #withAckMode(AckMode) ack mode}. Group flushing replaces flush-on-commit. By default, group flushing is
+     * disabled.
+     *
+     * @param flushInterval the minimum interval between flushes, or {@link Duration#ZERO} to disable group flushing
+     * @return the log server builder
+     * @throws NullPointerException if the interval is null
+     * @throws IllegalArgumentException if the interval is negative
+     */
+    public Builder withFlushInterval(Duration flushInterval) {
+      checkNotNull(flushInterval, "flushInterval cannot be null");
+      checkArgument(!flushInterval.isNegative(), "flushInterval cannot be negative");
+      this.flushInterval = flushInterval;
+      return this;
+    }
+
+    /**
+     * Sets the number of bytes appended after which a group flush is started without waiting for the flush interval.
+     * <p>
+     * By default, the flush size is {@code 1MB}.
+     *
+     * @param flushSize the number of bytes appended after which to flush the journal
+     * @return the log server builder
+     * @throws IllegalArgumentException if the size is not positive
+     */
+    public Builder withFlushSize(long flushSize) {
+      checkArgument(flushSize > 0, "flushSize must be positive");
+      this.flushSize = flushSize;
+      return this;
+    }
+
     /**
      * Sets the maximum log size.
      *
@@ -333,5 +432,92 @@ public interface DistributedLogServer extends Managed<DistributedLogServer> {
       this.maxLogAge = maxLogAge;
       return this;
     }
+
+    /**
+     * Sets the producer session timeout.
+     * <p>
+     * A producer's session, used to detect duplicate and out-of-order appends, expires once the producer has not
+     * appended an entry for the timeout, after which the producer must start a new session. By default, sessions
+     * expire after a day.
+     *
+     * @param sessionTimeout the producer session timeout
+     * @return the log server builder
+     * @throws NullPointerException if the timeout is null
+     * @throws IllegalArgumentException if the timeout is not positive
+     */
+    public Builder withSessionTimeout(Duration sessionTimeout) {
+      checkNotNull(sessionTimeout, "sessionTimeout cannot be null");
+      checkArgument(!sessionTimeout.isNegative() && !sessionTimeout.isZero(), "sessionTimeout must be positive");
+      this.sessionTimeout = sessionTimeout;
+      return this;
+    }
+
+    /**
+     * Sets the interval at which the commit index and producer sessions are checkpointed.
+     * <p>
+     * On restart, only the entries written after the last checkpoint are read to recover the producer sessions. A
+     * checkpoint is skipped if nothing changed since the previous one. By default, the server checkpoints every second.
+     *
+     * @param checkpointInterval the checkpoint interval
+     * @return the log server builder
+     * @throws NullPointerException if the interval is null
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    public Builder withCheckpointInterval(Duration checkpointInterval) {
+      checkNotNull(checkpointInterval, "checkpointInterval cannot be null");
+      checkArgument(!checkpointInterval.isNegative() && !checkpointInterval.isZero(),
+          "checkpointInterval must be positive");
+      this.checkpointInterval = checkpointInterval;
+      return this;
+    }
+
+    /**
+     * Sets the journal entry compression.
+     * <p>
+     * When compression is enabled, entries are appended uncompressed, and closed segments are rewritten in the
+     * background with entry values at least as large as the compression threshold compressed, leaving the tail of the
+     * journal untouched. Compressed values are decompressed by the server before records are sent to clients.
+     * Compressed and uncompressed entries can be mixed in the same journal, so compression can be safely enabled or
+     * disabled for an existing log.
+     *
+     * @param compression the journal entry compression
+     * @return the log server builder
+     * @throws NullPointerException if the compression is null
+     */
+    public Builder withCompression(Compression compression) {
+      this.compression = checkNotNull(compression, "compression cannot be null");
+      return this;
+    }
+
+    /**
+     * Sets the minimum size in bytes of entry values to compress.
+     * <p>
+     * Values smaller than the threshold are left uncompressed to avoid paying the compression cost for small records
+     * that are unlikely to benefit from it. By default, the compression threshold is {@code 1024}.
+     *
+     * @param compressionThreshold the minimum size of entry values to compress
+     * @return the log server builder
+     * @throws IllegalArgumentException if the threshold is not positive
+     */
+    public Builder withCompressionThreshold(int compressionThreshold) {
+      checkArgument(compressionThreshold > 0, "compressionThreshold must be positive");
+      this.compressionThreshold = compressionThreshold;
+      return this;
+    }
+
+    /**
+     * Sets the registry to which to record server metrics.
+     * <p>
+     * Metrics from multiple servers and clients may be recorded to the same registry, as server metrics are tagged
+     * with the server ID. By default, each server records metrics to its own registry.
+     *
+     * @param metricsRegistry the metrics registry
+     * @return the log server builder
+     * @throws NullPointerException if the registry is null
+     */
+    public Builder withMetricsRegistry(MetricsRegistry metricsRegistry) {
+      this.metricsRegistry = checkNotNull(metricsRegistry, "metricsRegistry cannot be null");
+      return this;
+    }
   }
 }
@@ -15,23 +15,48 @@
  */
 package io.atomix.protocols.log.impl;
 
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import io.atomix.protocols.log.DistributedLogClient;
 import io.atomix.protocols.log.DistributedLogException;
+import io.atomix.protocols.log.DistributedLogPartition;
+import io.atomix.protocols.log.DistributedLogProducer;
+import io.atomix.protocols.log.Durability;
 import io.atomix.protocols.log.Term;
 import io.atomix.protocols.log.TermProvider;
+import io.atomix.protocols.log.metrics.Counter;
+import io.atomix.protocols.log.metrics.Histogram;
+import io.atomix.protocols.log.metrics.MetricId;
+import io.atomix.protocols.log.metrics.MetricsRegistry;
 import io.atomix.protocols.log.protocol.AppendRequest;
+import io.atomix.protocols.log.protocol.AppendResponse;
+import io.atomix.protocols.log.protocol.ConsumeControl;
 import io.atomix.protocols.log.protocol.ConsumeRequest;
 import io.atomix.protocols.log.protocol.ConsumeResponse;
+import io.atomix.protocols.log.protocol.FetchRequest;
+import io.atomix.protocols.log.protocol.FetchResponse;
 import io.atomix.protocols.log.protocol.LogClientProtocol;
-import io.atomix.protocols.log.protocol.ResetRequest;
 import io.atomix.protocols.log.protocol.ResponseStatus;
 import io.atomix.service.client.LogConsumer;
-import io.atomix.service.client.LogProducer;
+import io.atomix.utils.concurrent.Scheduled;
 import io.atomix.utils.concurrent.ThreadContext;
 import io.atomix.utils.concurrent.ThreadContextFactory;
 import io.atomix.utils.logging.ContextualLoggerFactory;
@@ -39,11 +64,17 @@ import io.atomix.utils.logging.LoggerContext;
 import io.atomix.utils.stream.StreamHandler;
 import org.slf4j.Logger;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 /**
  * Default distributed log client.
  */
 public class DefaultDistributedLogClient implements DistributedLogClient {
   private static final AtomicLong CONSUMER_ID = new AtomicLong();
+  private static final Duration MAX_RETRY_DELAY = Duration.ofSeconds(1);
+  private static final int CONSUMER_WINDOW = 1024;
+  private static final Duration SEEK_TIMEOUT = Duration.ofSeconds(1);
+  private static final int REPLAY_CHUNK_SIZE = 1024;
   private final String clientId;
   private final long consumerId;
   private final LogClientProtocol protocol;
@@ -51,8 +82,15 @@ public class DefaultDistributedLogClient implements DistributedLogClient {
   private final ThreadContext threadContext;
   private final ThreadContextFactory threadContextFactory;
   private final boolean closeOnStop;
+  private final int maxRetries;
+  private final Duration retryDelay;
+  private final MetricsRegistry metrics;
+  private final Histogram appendTime;
+  private final Counter appendRetries;
+  private final Counter appendFailures;
   private final Consumer<Term> termListener = this::changeTerm;
-  private Term term;
+  private final AtomicReference<Term> term = new AtomicReference<>();
+  private final AtomicInteger fetchCount = new AtomicInteger();
   private final DefaultDistributedLogProducer producer = new DefaultDistributedLogProducer();
   private final DefaultDistributedLogConsumer consumer = new DefaultDistributedLogConsumer();
 
@@ -62,18 +100,27 @@ public class DefaultDistributedLogClient implements DistributedLogClient {
       TermProvider termProvider,
       ThreadContext threadContext,
       ThreadContextFactory threadContextFactory,
-      boolean closeOnStop) {
+      boolean closeOnStop,
+      int maxRetries,
+      Duration retryDelay,
+      MetricsRegistry metrics) {
     this.clientId = clientId;
     this.protocol = protocol;
     this.termProvider = termProvider;
     this.threadContext = threadContext;
     this.threadContextFactory = threadContextFactory;
     this.closeOnStop = closeOnStop;
+    this.maxRetries = maxRetries;
+    this.retryDelay = retryDelay;
+    this.metrics = metrics;
+    this.appendTime = metrics.histogram(MetricId.of("log.client.append.time", "client", clientId));
+    this.appendRetries = metrics.counter(MetricId.of("log.client.append.retries", "client", clientId));
+    this.appendFailures = metrics.counter(MetricId.of("log.client.append.failures", "client", clientId));
     this.consumerId = CONSUMER_ID.incrementAndGet();
   }
 
   @Override
-  public LogProducer producer() {
+  public DistributedLogProducer producer() {
     return producer;
   }
 
@@ -82,6 +129,53 @@ public class DefaultDistributedLogClient implements DistributedLogClient {
     return consumer;
   }
 
+  @Override
+  public CompletableFuture<List<io.atomix.service.protocol.LogRecord>> fetch(long index, int maxBytes) {
+    FetchRequest request = FetchRequest.newBuilder()
+        .setIndex(index)
+        .setMaxBytes(maxBytes)
+        .build();
+    return term().thenCompose(term -> fetch(fetchMembers(term), 0, request)).thenApply(this::records);
+  }
+
+  @Override
+  public Iterator<io.atomix.service.protocol.LogRecord> iterator(long index, int fetchSize) {
+    return new RecordIterator(index, 0, fetchSize, null);
+  }
+
+  @Override
+  public CompletableFuture<List<DistributedLogPartition>> partition(long fromIndex, long toIndex, int partitions) {
+    checkArgument(partitions > 0, "partitions must be positive");
+    return term().thenCompose(term -> range(term, fromIndex, toIndex).thenApply(range -> {
+      List<DistributedLogPartition> result = new ArrayList<>(partitions);
+      long count = range[1] - range[0] + 1;
+      long firstIndex = range[0];
+      for (int i = 0; i < partitions && firstIndex <= range[1]; i++) {
+        // The records left over by an even split are spread one each across the first partitions.
+        long size = count / partitions + (i < count % partitions ? 1 : 0);
+        result.add(new DefaultDistributedLogPartition(firstIndex, firstIndex + size - 1, replayMembers(term, i)));
+        firstIndex += size;
+      }
+      return result;
+    }));
+  }
+
+  @Override
+  public Iterator<io.atomix.service.protocol.LogRecord> replay(long fromIndex, long toIndex, int parallelism) {
+    checkArgument(parallelism > 0, "parallelism must be positive");
+    return new ReplayIterator(fromIndex, toIndex, parallelism);
+  }
+
+  @Override
+  public String clientId() {
+    return clientId;
+  }
+
+  @Override
+  public MetricsRegistry metrics() {
+    return metrics;
+  }
+
   @Override
   public CompletableFuture<DistributedLogClient> connect() {
     termProvider.addListener(termListener);
@@ -91,6 +185,7 @@ public class DefaultDistributedLogClient implements DistributedLogClient {
   @Override
   public CompletableFuture<Void> close() {
     termProvider.removeListener(termListener);
+    consumer.close();
     threadContext.close();
     if (closeOnStop) {
       threadContextFactory.close();
@@ -102,69 +197,595 @@ public class DefaultDistributedLogClient implements DistributedLogClient {
    * Handles a term change.
    */
   private void changeTerm(Term term) {
-    threadContext.execute(() -> {
-      if (this.term == null || term.term() > this.term.term()) {
-        this.term = term;
-        consumer.register(term.leader());
+    if (updateTerm(term)) {
+      threadContext.execute(() -> consumer.register(term.leader()));
+    }
+  }
+
+  /**
+   * Updates the cached term if the given term is newer than the current term.
+   *
+   * @param term the term with which to update the cached term
+   * @return indicates whether the cached term was updated
+   */
+  private boolean updateTerm(Term term) {
+    Term currentTerm = this.term.get();
+    while (currentTerm == null || term.term() > currentTerm.term()) {
+      if (this.term.compareAndSet(currentTerm, term)) {
+        return true;
       }
-    });
+      currentTerm = this.term.get();
+    }
+    return false;
+  }
+
+  /**
+   * Fills in the followers of a cached term hinted by a leader from the given term of the same number.
+   *
+   * @param term the term from which to read the followers
+   */
+  private void updateFollowers(Term term) {
+    Term currentTerm = this.term.get();
+    while (currentTerm != null
+        && currentTerm.term() == term.term()
+        && currentTerm.followers().isEmpty()
+        && !term.followers().isEmpty()) {
+      if (this.term.compareAndSet(currentTerm, term)) {
+        return;
+      }
+      currentTerm = this.term.get();
+    }
   }
 
   /**
    * Returns the current primary term.
+   * <p>
+   * The cached term is read without scheduling on the client thread. The term provider is only queried if no term
+   * is known yet.
    *
    * @return the current primary term
    */
   private CompletableFuture<Term> term() {
+    Term term = this.term.get();
+    if (term != null) {
+      return CompletableFuture.completedFuture(term);
+    }
+
     CompletableFuture<Term> future = new CompletableFuture<>();
-    threadContext.execute(() -> {
-      if (term != null) {
-        future.complete(term);
+    termProvider.getTerm().whenComplete((newTerm, error) -> {
+      if (newTerm != null) {
+        updateTerm(newTerm);
+        future.complete(this.term.get());
       } else {
-        termProvider.getTerm().whenCompleteAsync((term, error) -> {
-          if (term != null) {
-            this.term = term;
-            future.complete(term);
-          } else {
-            future.completeExceptionally(new DistributedLogException.Unavailable());
-          }
-        });
+        future.completeExceptionally(new DistributedLogException.Unavailable());
       }
     });
     return future;
   }
 
+  /**
+   * Returns the members from which to fetch records.
+   * <p>
+   * Followers are tried first, starting from a different follower for each call to spread fetches across followers,
+   * and the leader is tried last.
+   *
+   * @param term the current term
+   * @return the members from which to fetch records, in the order in which to try them
+   */
+  private List<String> fetchMembers(Term term) {
+    List<String> members = followers(term);
+    if (!members.isEmpty()) {
+      Collections.rotate(members, -Math.floorMod(fetchCount.getAndIncrement(), members.size()));
+    }
+    members.add(term.leader());
+    return members;
+  }
+
+  /**
+   * Returns the members from which to fetch a partition of records.
+   * <p>
+   * Partitions are assigned to the followers and the leader in turn. The leader is tried first for the partitions
+   * assigned to it and last for all other partitions, and each member is tried once.
+   *
+   * @param term      the current term
+   * @param partition the position of the partition
+   * @return the members from which to fetch the partition, in the order in which to try them
+   */
+  private List<String> replayMembers(Term term, int partition) {
+    List<String> members = followers(term);
+    int position = Math.floorMod(partition, members.size() + 1);
+    Collections.rotate(members, -position);
+    members.add(position == members.size() ? 0 : members.size(), term.leader());
+    return members;
+  }
+
+  /**
+   * Returns the distinct followers of the given term, excluding the leader.
+   *
+   * @param term the term
+   * @return the distinct followers of the term
+   */
+  private static List<String> followers(Term term) {
+    List<String> followers = new ArrayList<>(new LinkedHashSet<>(term.followers()));
+    followers.remove(term.leader());
+    return followers;
+  }
+
+  /**
+   * Returns the committed records between the given indexes as a {@code [first, last]} pair.
+   * <p>
+   * The committed range is read from the leader, which knows the latest commit index.
+   *
+   * @param term      the current term
+   * @param fromIndex the first index requested
+   * @param toIndex   the last index requested, or {@code 0} for the commit index
+   * @return a future to be completed with the first and last committed index in the range
+   */
+  private CompletableFuture<long[]> range(Term term, long fromIndex, long toIndex) {
+    FetchRequest request = FetchRequest.newBuilder()
+        .setIndex(Long.MAX_VALUE)
+        .build();
+    return fetch(Collections.singletonList(term.leader()), 0, request).thenApply(response -> new long[]{
+        Math.max(fromIndex, response.getFirstIndex()),
+        toIndex > 0 ? Math.min(toIndex, response.getCommitIndex()) : response.getCommitIndex()});
+  }
+
+  /**
+   * Fetches all records between the given indexes.
+   *
+   * @param members   the members from which to fetch records, the leader last
+   * @param index     the index of the next record to fetch
+   * @param lastIndex the index of the last record to fetch
+   * @param records   the records fetched so far
+   * @return a future to be completed with the fetched records
+   */
+  private CompletableFuture<List<io.atomix.service.protocol.LogRecord>> fetchRange(
+      List<String> members, long index, long lastIndex, List<io.atomix.service.protocol.LogRecord> records) {
+    FetchRequest request = FetchRequest.newBuilder()
+        .setIndex(index)
+        .setEndIndex(lastIndex)
+        .build();
+    return fetch(members, 0, request).thenCompose(response -> {
+      records.addAll(records(response));
+      long nextIndex = response.getRecordsCount() > 0
+          ? response.getRecords(response.getRecordsCount() - 1).getIndex() + 1
+          : lastIndex + 1;
+      if (nextIndex > lastIndex) {
+        return CompletableFuture.completedFuture(records);
+      }
+      return fetchRange(members, nextIndex, lastIndex, records);
+    });
+  }
+
+  /**
+   * Fetches records from the given member, trying the following members if the member does not respond.
+   * <p>
+   * A follower may not yet have learned that records were committed by the leader, so if a follower returns no
+   * records, the records are fetched from the leader.
+   *
+   * @param members the members from which to fetch records, the leader last
+   * @param member  the position of the member from which to fetch records
+   * @param request the fetch request
+   * @return a future to be completed with the fetch response
+   */
+  private CompletableFuture<FetchResponse> fetch(List<String> members, int member, FetchRequest request) {
+    if (member >= members.size()) {
+      CompletableFuture<FetchResponse> future = new CompletableFuture<>();
+      future.completeExceptionally(new DistributedLogException.Unavailable());
+      return future;
+    }
+    return protocol.fetch(members.get(member), request).handle((response, error) -> {
+      if (error == null && response.getStatus() == ResponseStatus.OK) {
+        if (response.getRecordsCount() > 0 || members.get(member).equals(members.get(members.size() - 1))) {
+          return CompletableFuture.completedFuture(response);
+        }
+        return fetch(members, members.size() - 1, request);
+      }
+      return fetch(members, member + 1, request);
+    }).thenCompose(future -> future);
+  }
+
+  /**
+   * Returns the records in the given fetch response.
+   */
+  private List<io.atomix.service.protocol.LogRecord> records(FetchResponse response) {
+    List<io.atomix.service.protocol.LogRecord> records = new ArrayList<>(response.getRecordsCount());
+    for (io.atomix.protocols.log.protocol.LogRecord record : response.getRecordsList()) {
+      records.add(io.atomix.service.protocol.LogRecord.newBuilder()
+          .setIndex(record.getIndex())
+          .setTimestamp(record.getTimestamp())
+          .setValue(record.getValue())
+          .build());
+    }
+    return records;
+  }
+
+  /**
+   * Waits for the given future to be completed, failing with a {@link DistributedLogException}.
+   */
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof DistributedLogException
+          ? (DistributedLogException) e.getCause()
+          : new DistributedLogException.Unavailable();
+    }
+  }
+
+  /**
+   * Default distributed log partition.
+   */
+  private final class DefaultDistributedLogPartition implements DistributedLogPartition {
+    private final long firstIndex;
+    private final long lastIndex;
+    private final List<String> members;
+
+    DefaultDistributedLogPartition(long firstIndex, long lastIndex, List<String> members) {
+      this.firstIndex = firstIndex;
+      this.lastIndex = lastIndex;
+      this.members = members;
+    }
+
+    @Override
+    public long firstIndex() {
+      return firstIndex;
+    }
+
+    @Override
+    public long lastIndex() {
+      return lastIndex;
+    }
+
+    @Override
+    public String member() {
+      return members.get(0);
+    }
+
+    @Override
+    public CompletableFuture<List<io.atomix.service.protocol.LogRecord>> fetch() {
+      return fetchRange(members, firstIndex, lastIndex, new ArrayList<>());
+    }
+
+    @Override
+    public Iterator<io.atomix.service.protocol.LogRecord> iterator() {
+      return new RecordIterator(firstIndex, lastIndex, 0, members);
+    }
+  }
+
+  /**
+   * Committed record iterator.
+   * <p>
+   * Unless the iterator is created with the members from which to fetch records, the members are chosen when the
+   * first chunk is fetched, so chunks are read sequentially from the same member while it responds. The next chunk
+   * is requested as soon as a chunk is received.
+   */
+  private final class RecordIterator implements Iterator<io.atomix.service.protocol.LogRecord> {
+    private final long endIndex;
+    private final int fetchSize;
+    private List<String> members;
+    private CompletableFuture<List<io.atomix.service.protocol.LogRecord>> nextChunk;
+    private Iterator<io.atomix.service.protocol.LogRecord> chunk = Collections.emptyIterator();
+    private boolean done;
+
+    RecordIterator(long index, long endIndex, int fetchSize, List<String> members) {
+      this.endIndex = endIndex;
+      this.fetchSize = fetchSize;
+      this.members = members;
+      this.nextChunk = fetchChunk(index);
+    }
+
+    /**
+     * Fetches the chunk of records starting at the given index.
+     */
+    private CompletableFuture<List<io.atomix.service.protocol.LogRecord>> fetchChunk(long index) {
+      FetchRequest request = FetchRequest.newBuilder()
+          .setIndex(index)
+          .setMaxBytes(fetchSize)
+          .setEndIndex(endIndex)
+          .build();
+      CompletableFuture<List<String>> members = this.members != null
+          ? CompletableFuture.completedFuture(this.members)
+          : term().thenApply(term -> this.members = fetchMembers(term));
+      return members.thenCompose(m -> fetch(m, 0, request)).thenApply(DefaultDistributedLogClient.this::records);
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!chunk.hasNext() && !done) {
+        List<io.atomix.service.protocol.LogRecord> records = join(nextChunk);
+        long nextIndex = records.isEmpty() ? 0 : records.get(records.size() - 1).getIndex() + 1;
+        if (records.isEmpty() || (endIndex > 0 && nextIndex > endIndex)) {
+          done = true;
+        } else {
+          nextChunk = fetchChunk(nextIndex);
+        }
+        chunk = records.iterator();
+      }
+      return chunk.hasNext();
+    }
+
+    @Override
+    public io.atomix.service.protocol.LogRecord next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return chunk.next();
+    }
+  }
+
+  /**
+   * In-order iterator over a range of committed records fetched in concurrent chunks.
+   * <p>
+   * Chunks are assigned to the followers and the leader in turn. Up to {@code parallelism} chunks are fetched at once,
+   * and the next chunk is requested each time a chunk is received.
+   */
+  private final class ReplayIterator implements Iterator<io.atomix.service.protocol.LogRecord> {
+    private final long fromIndex;
+    private final long toIndex;
+    private final int parallelism;
+    private final Queue<CompletableFuture<List<io.atomix.service.protocol.LogRecord>>> chunks = new ArrayDeque<>();
+    private Iterator<io.atomix.service.protocol.LogRecord> chunk = Collections.emptyIterator();
+    private Term term;
+    private long nextIndex;
+    private long lastIndex;
+    private int chunkCount;
+
+    ReplayIterator(long fromIndex, long toIndex, int parallelism) {
+      this.fromIndex = fromIndex;
+      this.toIndex = toIndex;
+      this.parallelism = parallelism;
+    }
+
+    /**
+     * Requests chunks until the maximum number of chunks are being fetched or the whole range has been requested.
+     */
+    private void fetchChunks() {
+      while (chunks.size() < parallelism && nextIndex <= lastIndex) {
+        long endIndex = Math.min(nextIndex + REPLAY_CHUNK_SIZE - 1, lastIndex);
+        chunks.add(fetchRange(replayMembers(term, chunkCount++), nextIndex, endIndex, new ArrayList<>()));
+        nextIndex = endIndex + 1;
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (term == null) {
+        Term term = join(term());
+        long[] range = join(range(term, fromIndex, toIndex));
+        this.term = term;
+        this.nextIndex = range[0];
+        this.lastIndex = range[1];
+        fetchChunks();
+      }
+      while (!chunk.hasNext() && !chunks.isEmpty()) {
+        chunk = join(chunks.remove()).iterator();
+        fetchChunks();
+      }
+      return chunk.hasNext();
+    }
+
+    @Override
+    public io.atomix.service.protocol.LogRecord next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return chunk.next();
+    }
+  }
+
   /**
    * Distributed log producer.
+   * <p>
+   * Each append is tagged with the producer's session identifier and the next sequence number in the session, allowing
+   * many appends to be in flight at once. The leader appends records in sequence order and recognizes retried
+   * sequence numbers, so an append rejected as out of sequence is resent once the preceding append completes, and
+   * failed appends can be safely retried. If an append fails permanently, the session is reset, failing any appends
+   * still pending in the old session.
    */
-  private class DefaultDistributedLogProducer implements LogProducer {
+  private class DefaultDistributedLogProducer implements DistributedLogProducer {
+    private ProducerSession session = new ProducerSession();
+
     @Override
     public CompletableFuture<Long> append(byte[] value) {
-      CompletableFuture<Long> future = new CompletableFuture<>();
-      term().thenCompose(term -> protocol.append(term.leader(), AppendRequest.newBuilder()
-          .setValue(ByteString.copyFrom(value))
-          .build()))
+      return append(ByteString.copyFrom(value));
+    }
+
+    @Override
+    public CompletableFuture<Long> append(ByteBuffer value) {
+      return append(UnsafeByteOperations.unsafeWrap(value));
+    }
+
+    @Override
+    public CompletableFuture<Long> append(ByteBuffer[] values) {
+      List<ByteString> value = new ArrayList<>(values.length);
+      for (ByteBuffer buffer : values) {
+        value.add(UnsafeByteOperations.unsafeWrap(buffer));
+      }
+      // Despite its name, copyFrom(Iterable) concatenates the wrapped buffers into a rope. Only buffers too small to be
+      // worth a rope node, under 128 bytes when combined with a neighbour, are copied.
+      return append(ByteString.copyFrom(value));
+    }
+
+    @Override
+    public CompletableFuture<Long> append(ByteString value) {
+      return append(value, Durability.DEFAULT);
+    }
+
+    @Override
+    public CompletableFuture<Long> append(ByteString value, Durability durability) {
+      PendingAppend append;
+      synchronized (this) {
+        append = new PendingAppend(session, AppendRequest.newBuilder()
+            .setValue(value)
+            .setProducerId(session.id)
+            .setSequence(++session.sequence)
+            .setDurability(durability)
+            .build(), session.lastAppend);
+        session.lastAppend = append.future;
+      }
+      append.send();
+      return append.future;
+    }
+
+    /**
+     * Resets the given session if it's still the producer's current session.
+     *
+     * @param session the session to reset
+     */
+    private synchronized void resetSession(ProducerSession session) {
+      if (this.session == session) {
+        this.session = new ProducerSession();
+      }
+    }
+  }
+
+  /**
+   * Producer session.
+   */
+  private static final class ProducerSession {
+    private final String id = UUID.randomUUID().toString();
+    private long sequence;
+    private CompletableFuture<Long> lastAppend;
+  }
+
+  /**
+   * Append in progress.
+   */
+  private final class PendingAppend {
+    private final ProducerSession session;
+    private final AppendRequest request;
+    private final CompletableFuture<Long> previous;
+    private final CompletableFuture<Long> future = new CompletableFuture<>();
+    private final long startTime = System.nanoTime();
+    private int attempt;
+
+    PendingAppend(ProducerSession session, AppendRequest request, CompletableFuture<Long> previous) {
+      this.session = session;
+      this.request = request;
+      this.previous = previous;
+    }
+
+    /**
+     * Sends the append request to the leader.
+     */
+    void send() {
+      term().thenCompose(term -> protocol.append(term.leader(), request))
           .whenCompleteAsync((response, error) -> {
             if (error == null) {
-              if (response.getStatus() == ResponseStatus.OK) {
-                future.complete(response.getIndex());
-              } else {
-                future.completeExceptionally(new DistributedLogException.Unavailable());
+              switch (response.getStatus()) {
+                case OK:
+                  appendTime.record(System.nanoTime() - startTime);
+                  future.complete(response.getIndex());
+                  break;
+                case NOT_LEADER:
+                  retry(response);
+                  break;
+                case OUT_OF_SEQUENCE:
+                  resend();
+                  break;
+                default:
+                  fail(new DistributedLogException.Unavailable());
+                  break;
               }
             } else {
-              future.completeExceptionally(error);
+              retry(null);
             }
           }, threadContext);
-      return future;
+    }
+
+    /**
+     * Retries the append.
+     * <p>
+     * If the response carries a hint for a newer leader, the cached term is updated and the request is redirected to
+     * the new leader immediately. Otherwise, the term is refreshed from the term provider and the request is retried
+     * after an exponential backoff.
+     *
+     * @param response the response that rejected the append, or {@code null} if the request failed
+     */
+    private void retry(AppendResponse response) {
+      if (attempt++ >= maxRetries) {
+        fail(new DistributedLogException.Unavailable());
+        return;
+      }
+      appendRetries.increment();
+
+      Term currentTerm = term.get();
+      if (response != null
+          && !response.getLeader().isEmpty()
+          && (currentTerm == null || response.getTerm() > currentTerm.term())) {
+        // The hint carries no followers, so they're read from the term provider while the append is redirected.
+        changeTerm(new Term(response.getTerm(), response.getLeader(), Collections.emptyList()));
+        termProvider.getTerm().thenAccept(newTerm -> {
+          changeTerm(newTerm);
+          updateFollowers(newTerm);
+        });
+        send();
+      } else {
+        Duration delay = retryDelay.multipliedBy(1L << Math.min(attempt - 1, 16));
+        if (delay.compareTo(MAX_RETRY_DELAY) > 0) {
+          delay = MAX_RETRY_DELAY;
+        }
+        threadContext.schedule(delay, () -> termProvider.getTerm().whenComplete((newTerm, error) -> {
+          if (newTerm != null) {
+            changeTerm(newTerm);
+          }
+          send();
+        }));
+      }
+    }
+
+    /**
+     * Resends an append rejected as out of sequence once the preceding append in the session has completed.
+     * <p>
+     * If the preceding append failed, or the leader rejects the append even though the preceding append succeeded,
+     * the sequence can't be continued and the append fails.
+     */
+    private void resend() {
+      if (previous == null || previous.isCompletedExceptionally() || attempt++ >= maxRetries) {
+        fail(new DistributedLogException.Unavailable());
+      } else {
+        previous.whenCompleteAsync((index, error) -> {
+          if (error == null) {
+            send();
+          } else {
+            fail(error);
+          }
+        }, threadContext);
+      }
+    }
+
+    /**
+     * Fails the append and resets the producer session.
+     *
+     * @param error the append error
+     */
+    private void fail(Throwable error) {
+      appendFailures.increment();
+      producer.resetSession(session);
+      future.completeExceptionally(error);
     }
   }
 
   /**
    * Distributed log consumer.
+   * <p>
+   * The consumer holds a single consume session with the leader. Records are received in order up to a limit that is
+   * raised, along with an acknowledgement of the records received, once half of the window below the limit has been
+   * consumed. When a gap is detected the consumer asks the leader to resend from the next expected index, and further
+   * out-of-order records are dropped without asking again until the missing record arrives. If no record is received
+   * in order within the seek timeout, the consumer asks again, so records lost on the way to the consumer, including
+   * resent records and the last records sent, are eventually resent. The leader ignores a seek to the record it
+   * would send next, so asking again costs an idle consumer one control message per timeout.
    */
   private class DefaultDistributedLogConsumer implements LogConsumer {
-    private String leader;
     private long index;
+    private long limit;
+    private long seekIndex;
+    private long checkedIndex;
+    private Scheduled seekTimer;
+    private StreamHandler<ConsumeControl> session;
+    private long sessionId;
     private volatile Consumer<io.atomix.service.protocol.LogRecord> consumer;
 
     /**
@@ -172,17 +793,32 @@ public class DefaultDistributedLogClient implements DistributedLogClient {
      *
      * @param leader the leader with which to register the consumer
      */
-    private CompletableFuture<Void> register(String leader) {
-      CompletableFuture<Void> future = new CompletableFuture<>();
-      this.leader = leader;
-      protocol.consume(leader, ConsumeRequest.newBuilder()
+    private synchronized CompletableFuture<Void> register(String leader) {
+      if (consumer == null) {
+        return CompletableFuture.completedFuture(null);
+      }
+      if (session != null) {
+        session.complete();
+      }
+      long sessionId = ++this.sessionId;
+      this.limit = index + CONSUMER_WINDOW;
+      this.seekIndex = 0;
+      this.checkedIndex = index;
+      if (seekTimer != null) {
+        seekTimer.cancel();
+      }
+      seekTimer = threadContext.schedule(SEEK_TIMEOUT, SEEK_TIMEOUT, () -> checkProgress(sessionId));
+      session = protocol.consume(leader, ConsumeRequest.newBuilder()
           .setMemberId(clientId)
           .setConsumerId(consumerId)
+          .setSessionId(sessionId)
           .setIndex(index + 1)
+          .setLimit(limit)
           .build(), new StreamHandler<ConsumeResponse>() {
         @Override
         public void next(ConsumeResponse response) {
-          handleConsume(response);
+          // Records from a local leader arrive on the leader's thread, so consume all records on the client's thread.
+          threadContext.execute(() -> handleConsume(sessionId, response));
         }
 
         @Override
@@ -194,22 +830,21 @@ public class DefaultDistributedLogClient implements DistributedLogClient {
         public void error(Throwable error) {
 
         }
-      }).whenCompleteAsync((response, error) -> {
-        if (error == null) {
-          future.complete(null);
-        } else {
-          future.completeExceptionally(error);
-        }
-      }, threadContext);
-      return future;
+      });
+      return CompletableFuture.completedFuture(null);
     }
 
     /**
      * Handles a records request.
      *
-     * @param response the request to handle
+     * @param sessionId the session from which the record was received
+     * @param response  the request to handle
      */
-    private void handleConsume(ConsumeResponse response) {
+    private synchronized void handleConsume(long sessionId, ConsumeResponse response) {
+      // Ignore records still arriving from a closed session.
+      if (sessionId != this.sessionId) {
+        return;
+      }
       if (response.getReset()) {
         index = response.getRecord().getIndex() - 1;
       }
@@ -222,24 +857,78 @@ public class DefaultDistributedLogClient implements DistributedLogClient {
               .setValue(response.getRecord().getValue())
               .build());
           index = response.getRecord().getIndex();
+          seekIndex = 0;
+          if (limit - index <= CONSUMER_WINDOW / 2) {
+            limit = index + CONSUMER_WINDOW;
+            session.next(control().setLimit(limit).build());
+          }
         }
-      } else {
-        protocol.reset(leader, ResetRequest.newBuilder()
-            .setMemberId(clientId)
-            .setConsumerId(consumerId)
-            .setIndex(index + 1)
-            .build());
+      } else if (response.getRecord().getIndex() > index + 1 && seekIndex != index + 1) {
+        seek();
       }
     }
 
+    /**
+     * Asks the leader again to resend from the next expected index if no record was received in order since the last
+     * check.
+     *
+     * @param sessionId the session being checked
+     */
+    private synchronized void checkProgress(long sessionId) {
+      if (sessionId != this.sessionId) {
+        return;
+      }
+      if (index == checkedIndex) {
+        seek();
+      }
+      checkedIndex = index;
+    }
+
+    /**
+     * Asks the leader to resend records from the next expected index.
+     */
+    private void seek() {
+      seekIndex = index + 1;
+      limit = index + CONSUMER_WINDOW;
+      session.next(control().setSeek(seekIndex).setLimit(limit).build());
+    }
+
+    /**
+     * Returns a new control message builder acknowledging the records received in order.
+     */
+    private ConsumeControl.Builder control() {
+      return ConsumeControl.newBuilder()
+          .setMemberId(clientId)
+          .setConsumerId(consumerId)
+          .setSessionId(sessionId)
+          .setAck(index);
+    }
+
     @Override
     public CompletableFuture<Void> consume(long index, Consumer<io.atomix.service.protocol.LogRecord> consumer) {
       return term().thenCompose(term -> {
-        this.consumer = consumer;
-        this.index = index - 1;
-        return register(term.leader());
+        synchronized (this) {
+          this.consumer = consumer;
+          this.index = index - 1;
+          return register(term.leader());
+        }
       });
     }
+
+    /**
+     * Closes the consume session.
+     */
+    private synchronized void close() {
+      if (seekTimer != null) {
+        seekTimer.cancel();
+        seekTimer = null;
+      }
+      if (session != null) {
+        session.complete();
+        session = null;
+        sessionId++;
+      }
+    }
   }
 
   /**
@@ -269,7 +958,10 @@ public class DefaultDistributedLogClient implements DistributedLogClient {
           termProvider,
           threadContextFactory.createContext(),
           threadContextFactory,
-          closeOnStop);
+          closeOnStop,
+          maxRetries,
+          retryDelay,
+          metricsRegistry);
     }
   }
 }
@@ -15,10 +15,14 @@
  */
 package io.atomix.protocols.log.impl;
 
+import java.io.File;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
+import io.atomix.protocols.log.Compression;
 import io.atomix.protocols.log.DistributedLogServer;
 import io.atomix.protocols.log.LogEntry;
+import io.atomix.protocols.log.metrics.MetricsRegistry;
 import io.atomix.protocols.log.protocol.DistributedLogCodec;
 import io.atomix.storage.journal.SegmentedJournal;
 import io.atomix.utils.concurrent.ThreadContextFactory;
@@ -47,6 +51,11 @@ public class DefaultDistributedLogServer implements DistributedLogServer {
     return context.getRole();
   }
 
+  @Override
+  public MetricsRegistry metrics() {
+    return context.metrics();
+  }
+
   @Override
   public CompletableFuture<DistributedLogServer> start() {
     return context.start().thenApply(v -> this);
@@ -83,7 +92,8 @@ public class DefaultDistributedLogServer implements DistributedLogServer {
         closeOnStop = false;
       }
 
-      SegmentedJournal<LogEntry> journal = SegmentedJournal.<LogEntry>builder()
+      // The journal is opened when the server is started.
+      SegmentedJournal.Builder<LogEntry> journalBuilder = SegmentedJournal.<LogEntry>builder()
           .withName(serverId)
           .withDirectory(directory)
           .withStorageLevel(io.atomix.storage.StorageLevel.valueOf(storageLevel.name()))
@@ -91,8 +101,23 @@ public class DefaultDistributedLogServer implements DistributedLogServer {
           .withMaxSegmentSize(maxSegmentSize)
           .withMaxEntrySize(maxEntrySize)
           .withIndexDensity(indexDensity)
-          .withFlushOnCommit(flushOnCommit)
-          .build();
+          .withFlushOnCommit(flushOnCommit && flushInterval.isZero());
+      Supplier<SegmentedJournal<LogEntry>> journalFactory = journalBuilder::build;
+
+      // Closed segments are rewritten into a journal of the same name in a staging directory.
+      SegmentCompressor compressor = null;
+      if (compression == Compression.DEFLATE) {
+        File compressDirectory = new File(directory, serverId + "-compress");
+        SegmentedJournal.Builder<LogEntry> compressBuilder = SegmentedJournal.<LogEntry>builder()
+            .withName(serverId)
+            .withDirectory(compressDirectory)
+            .withStorageLevel(io.atomix.storage.StorageLevel.DISK)
+            .withCodec(new DistributedLogCodec())
+            .withMaxSegmentSize(maxSegmentSize)
+            .withMaxEntrySize(maxEntrySize)
+            .withIndexDensity(indexDensity);
+        compressor = new SegmentCompressor(serverId, compressDirectory, compressionThreshold, compressBuilder::build);
+      }
 
       return new DefaultDistributedLogServer(new DistributedLogServerContext(
           serverId,
@@ -100,11 +125,21 @@ public class DefaultDistributedLogServer implements DistributedLogServer {
           protocol,
           replicationFactor,
           replicationStrategy,
-          journal,
+          ackMode,
+          installThreshold,
+          journalFactory,
+          new MetaStore(directory, serverId),
+          new SegmentInstaller(directory, serverId),
           maxLogSize,
           maxLogAge,
+          flushInterval,
+          flushSize,
+          compressor,
+          sessionTimeout,
+          checkpointInterval,
           threadContextFactory,
-          closeOnStop));
+          closeOnStop,
+          metricsRegistry));
     }
   }
 }
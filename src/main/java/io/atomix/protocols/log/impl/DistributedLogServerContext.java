@@ -15,32 +15,48 @@
  */
 package io.atomix.protocols.log.impl;
 
+import java.io.File;
+import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+import io.atomix.protocols.log.AckMode;
 import io.atomix.protocols.log.DistributedLogServer;
 import io.atomix.protocols.log.LogEntry;
+import io.atomix.protocols.log.LogMetadata;
 import io.atomix.protocols.log.ReplicationStrategy;
 import io.atomix.protocols.log.Term;
 import io.atomix.protocols.log.TermProvider;
+import io.atomix.protocols.log.metrics.Histogram;
+import io.atomix.protocols.log.metrics.MetricId;
+import io.atomix.protocols.log.metrics.MetricsRegistry;
 import io.atomix.protocols.log.protocol.AppendRequest;
 import io.atomix.protocols.log.protocol.AppendResponse;
 import io.atomix.protocols.log.protocol.BackupRequest;
 import io.atomix.protocols.log.protocol.BackupResponse;
+import io.atomix.protocols.log.protocol.ConsumeControl;
 import io.atomix.protocols.log.protocol.ConsumeRequest;
 import io.atomix.protocols.log.protocol.ConsumeResponse;
+import io.atomix.protocols.log.protocol.FetchRequest;
+import io.atomix.protocols.log.protocol.FetchResponse;
+import io.atomix.protocols.log.protocol.InstallRequest;
+import io.atomix.protocols.log.protocol.InstallResponse;
+import io.atomix.protocols.log.protocol.LogRecord;
 import io.atomix.protocols.log.protocol.LogServerProtocol;
-import io.atomix.protocols.log.protocol.ResetRequest;
 import io.atomix.protocols.log.roles.FollowerRole;
 import io.atomix.protocols.log.roles.LeaderRole;
 import io.atomix.protocols.log.roles.LogServerRole;
 import io.atomix.protocols.log.roles.NoneRole;
+import io.atomix.storage.StorageException;
+import io.atomix.storage.journal.Indexed;
 import io.atomix.storage.journal.JournalReader;
 import io.atomix.storage.journal.JournalSegment;
 import io.atomix.storage.journal.JournalWriter;
@@ -56,16 +72,22 @@ import io.atomix.utils.stream.StreamHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static com.google.common.collect.ObjectArrays.concat;
+
 /**
  * Primary-backup server context.
  */
 public class DistributedLogServerContext implements Managed<Void> {
+  private static final Duration COMPRESS_INTERVAL = Duration.ofSeconds(30);
+
   private final Logger log;
   private final String serverId;
   private final TermProvider termProvider;
   private final LogServerProtocol protocol;
   private final int replicationFactor;
   private final ReplicationStrategy replicationStrategy;
+  private final AckMode ackMode;
+  private final long installThreshold;
   private final ThreadContextFactory threadContextFactory;
   private final ThreadContext threadContext;
   private final boolean closeOnStop;
@@ -74,14 +96,37 @@ public class DistributedLogServerContext implements Managed<Void> {
   private LogServerRole role = new NoneRole(this);
   private long currentTerm;
   private long commitIndex;
-  private final SegmentedJournal<LogEntry> journal;
-  private final JournalWriter<LogEntry> writer;
-  private final JournalReader<LogEntry> reader;
+  private final Supplier<SegmentedJournal<LogEntry>> journalFactory;
+  private SegmentedJournal<LogEntry> journal;
+  private JournalWriter<LogEntry> writer;
+  private JournalReader<LogEntry> reader;
+  private final ProducerSessions sessions;
+  private final MetaStore metaStore;
+  private final SegmentInstaller installer;
   private final long maxLogSize;
   private final Duration maxLogAge;
+  private final Duration flushInterval;
+  private final long flushSize;
+  private final SegmentCompressor compressor;
+  private final Duration checkpointInterval;
+  private JournalFlusher flusher;
+  private long flushedIndex;
+  private JournalFetcher fetcher;
+  private boolean journalOpen;
   private Scheduled compactTimer;
+  private Scheduled checkpointTimer;
+  private Scheduled compressTimer;
+  private long compressedIndex;
+  private boolean compressing;
+  private LogMetadata checkpoint = LogMetadata.getDefaultInstance();
   private final Consumer<Term> termChangeListener = this::changeRole;
   private final AtomicBoolean started = new AtomicBoolean();
+  private final MetricsRegistry metrics;
+  private final Histogram compactionTime;
+  private final Histogram flushTime;
+  private volatile long journalSize;
+  private volatile int segmentCount;
+  private volatile long entrySize;
 
   public DistributedLogServerContext(
       String serverId,
@@ -89,24 +134,44 @@ public class DistributedLogServerContext implements Managed<Void> {
       LogServerProtocol protocol,
       int replicationFactor,
       ReplicationStrategy replicationStrategy,
-      SegmentedJournal<LogEntry> journal,
+      AckMode ackMode,
+      long installThreshold,
+      Supplier<SegmentedJournal<LogEntry>> journalFactory,
+      MetaStore metaStore,
+      SegmentInstaller installer,
       long maxLogSize,
       Duration maxLogAge,
+      Duration flushInterval,
+      long flushSize,
+      SegmentCompressor compressor,
+      Duration sessionTimeout,
+      Duration checkpointInterval,
       ThreadContextFactory threadContextFactory,
-      boolean closeOnStop) {
+      boolean closeOnStop,
+      MetricsRegistry metrics) {
     this.serverId = serverId;
     this.termProvider = termProvider;
     this.protocol = protocol;
     this.replicationFactor = replicationFactor;
     this.replicationStrategy = replicationStrategy;
+    this.ackMode = ackMode;
+    this.installThreshold = installThreshold;
     this.threadContextFactory = threadContextFactory;
     this.threadContext = threadContextFactory.createContext();
     this.closeOnStop = closeOnStop;
-    this.journal = journal;
-    this.writer = journal.writer();
-    this.reader = journal.openReader(1);
+    this.journalFactory = journalFactory;
+    this.metaStore = metaStore;
+    this.installer = installer;
     this.maxLogSize = maxLogSize;
     this.maxLogAge = maxLogAge;
+    this.flushInterval = flushInterval;
+    this.flushSize = flushSize;
+    this.compressor = compressor;
+    this.sessions = new ProducerSessions(sessionTimeout);
+    this.checkpointInterval = checkpointInterval;
+    this.metrics = metrics;
+    this.compactionTime = metrics.histogram(metricId("log.compaction.time"));
+    this.flushTime = metrics.histogram(metricId("log.flush.time"));
     this.log = new ContextualLogger(LoggerFactory.getLogger(getClass()),
         LoggerContext.builder(getClass())
             .addValue(serverId)
@@ -149,6 +214,93 @@ public class DistributedLogServerContext implements Managed<Void> {
     return writer;
   }
 
+  /**
+   * Records an entry appended to the journal by the writer.
+   *
+   * @param entry the appended entry
+   */
+  public void appended(Indexed<LogEntry> entry) {
+    if (flusher != null) {
+      flusher.appended(entry.index(), entry.size());
+    }
+  }
+
+  /**
+   * Truncates the journal and producer sessions after the given index.
+   * <p>
+   * If the truncated entries were included in the last checkpoint, the producer sessions are checkpointed again
+   * immediately, so entries later written at the same indexes are never recovered on top of the truncated entries'
+   * sessions.
+   *
+   * @param index the index after which to truncate the journal
+   */
+  public void truncate(long index) {
+    fetcher.exclusive(() -> writer.truncate(index));
+    sessions.truncate(index);
+    if (flusher != null) {
+      flusher.truncated(index);
+    }
+    flushedIndex = Math.min(flushedIndex, index);
+    if (index < checkpoint.getLastIndex()) {
+      checkpoint();
+    }
+  }
+
+  /**
+   * Returns a future to be completed once the entry at the given index has been flushed to disk.
+   * <p>
+   * When group flushing is enabled, the future is completed by the next group flush. Otherwise, the journal is flushed
+   * before returning.
+   *
+   * @param index the index of the entry
+   * @return a future to be completed once the entry has been flushed
+   */
+  public CompletableFuture<Void> flush(long index) {
+    if (flusher != null) {
+      return flusher.flush(index);
+    }
+    writer.flush();
+    flushedIndex = writer.getLastIndex();
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * Returns the index of the last entry known to be flushed to disk.
+   *
+   * @return the index of the last entry known to be flushed to disk
+   */
+  public long flushedIndex() {
+    return flusher != null ? flusher.flushedIndex() : flushedIndex;
+  }
+
+  /**
+   * Returns a future to be completed once the entry at the given index may be acknowledged to a producer.
+   * <p>
+   * When group flushing is enabled, entries are acknowledged only once they've been flushed. Otherwise, entries are
+   * acknowledged without waiting for a flush.
+   *
+   * @param index the index of the entry
+   * @return a future to be completed once the entry may be acknowledged
+   */
+  public CompletableFuture<Void> durable(long index) {
+    return flusher != null ? flusher.flush(index) : CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * Reads committed records for a fetch request on the fetcher thread.
+   * <p>
+   * Records are read until the next record would exceed the given size, but at least one record is read if any is
+   * available.
+   *
+   * @param index    the index from which to read
+   * @param endIndex the index of the last record to read, which must be committed
+   * @param maxBytes the maximum number of bytes to read
+   * @return a future to be completed with the records read
+   */
+  public CompletableFuture<List<LogRecord>> readCommitted(long index, long endIndex, int maxBytes) {
+    return fetcher.read(index, endIndex, maxBytes);
+  }
+
   /**
    * Returns the log server journal reader.
    *
@@ -158,6 +310,46 @@ public class DistributedLogServerContext implements Managed<Void> {
     return reader;
   }
 
+  /**
+   * Returns the producer sessions.
+   *
+   * @return the producer sessions
+   */
+  public ProducerSessions sessions() {
+    return sessions;
+  }
+
+  /**
+   * Returns the metrics registry.
+   *
+   * @return the metrics registry
+   */
+  public MetricsRegistry metrics() {
+    return metrics;
+  }
+
+  /**
+   * Returns a metric identifier tagged with the server ID.
+   *
+   * @param name the metric name
+   * @param tags alternating tag names and values
+   * @return the metric identifier
+   */
+  public MetricId metricId(String name, String... tags) {
+    return MetricId.of(name, concat(new String[]{"server", serverId}, tags, String.class));
+  }
+
+  /**
+   * Returns the estimated average size of an entry in the journal.
+   * <p>
+   * The estimate is updated periodically and may be read from any thread.
+   *
+   * @return the estimated average size of an entry in bytes
+   */
+  public long entrySize() {
+    return entrySize;
+  }
+
   /**
    * Returns the replication factor.
    *
@@ -176,6 +368,24 @@ public class DistributedLogServerContext implements Managed<Void> {
     return replicationStrategy;
   }
 
+  /**
+   * Returns the guarantee with which backups are acknowledged.
+   *
+   * @return the backup acknowledgement mode
+   */
+  public AckMode ackMode() {
+    return ackMode;
+  }
+
+  /**
+   * Returns the number of entries a follower must be behind for closed segments to be installed on it.
+   *
+   * @return the number of entries a follower must be behind, or {@code 0} if installs are disabled
+   */
+  public long installThreshold() {
+    return installThreshold;
+  }
+
   /**
    * Returns the server thread context.
    *
@@ -258,12 +468,187 @@ public class DistributedLogServerContext implements Managed<Void> {
     return commitIndex;
   }
 
+  /**
+   * Stages a chunk of a segment file installed by the leader.
+   *
+   * @param request the install request carrying the chunk
+   * @return indicates whether the chunk follows the staged data
+   * @throws StorageException if the chunk cannot be written
+   */
+  public boolean stage(InstallRequest request) {
+    try {
+      return installer.write(request);
+    } catch (IOException e) {
+      installer.reset();
+      throw new StorageException(e);
+    }
+  }
+
+  /**
+   * Replaces the journal with the staged segment files.
+   * <p>
+   * The staged files are first committed along with the leader's commit index and the leader's producer sessions as of
+   * the last installed entry, leaving the journal untouched if the install cannot be committed. The journal is then
+   * closed, once pending flushes and fetches have completed, and its segment files are replaced. Requests are rejected
+   * until the journal has been reopened, and if the files cannot be replaced, until the server is restarted.
+   * Otherwise, the journal is reopened and the server state recovered from the installed metadata.
+   *
+   * @param request the install request carrying the last chunk of the staged files
+   * @return a future to be completed on the server thread once the segment files have been installed, or failed with a
+   *     {@link StorageException} if they cannot be installed
+   */
+  public CompletableFuture<Void> installSegments(InstallRequest request) {
+    long lastIndex = request.getLastIndex();
+    try {
+      installer.commit(LogMetadata.newBuilder()
+          .setCommitIndex(Math.min(request.getIndex(), lastIndex))
+          .setLastIndex(lastIndex)
+          .addAllSessions(request.getSessionsList())
+          .build());
+    } catch (IOException e) {
+      CompletableFuture<Void> future = new CompletableFuture<>();
+      future.completeExceptionally(new StorageException(e));
+      return future;
+    }
+
+    return closeJournal(false).thenRun(() -> {
+      replaceSegments();
+      log.info("Installed journal segments up to index {}", writer.getLastIndex());
+    });
+  }
+
+  /**
+   * Replaces the closed journal's segment files with the committed segment files and reopens the journal and the
+   * role's readers.
+   * <p>
+   * If the files cannot be replaced, the journal is left closed rather than reopened partially replaced, the timers
+   * are cancelled and the server keeps rejecting requests until it is restarted, which completes the replacement.
+   *
+   * @throws StorageException if the segment files cannot be replaced
+   */
+  private void replaceSegments() {
+    try {
+      installer.replace(metaStore);
+    } catch (IOException | StorageException e) {
+      log.error("Failed to replace journal segments, the replacement will be completed on restart", e);
+      compactTimer.cancel();
+      checkpointTimer.cancel();
+      if (compressTimer != null) {
+        compressTimer.cancel();
+      }
+      throw e instanceof StorageException ? (StorageException) e : new StorageException(e);
+    }
+    open();
+    recover();
+    role.reopen();
+  }
+
+  /**
+   * Returns the first index in the journal.
+   *
+   * @return the first index in the journal
+   */
+  public long getFirstIndex() {
+    return reader.getFirstIndex();
+  }
+
+  /**
+   * Returns the term of the entry at the given index.
+   *
+   * @param index the index of the entry
+   * @return the term of the entry or {@code 0} if the journal does not contain the entry
+   */
+  public long getTerm(long index) {
+    if (index <= 0 || index > writer.getLastIndex()) {
+      return 0;
+    }
+    Indexed<LogEntry> lastEntry = writer.getLastEntry();
+    if (lastEntry != null && lastEntry.index() == index) {
+      return lastEntry.entry().getTerm();
+    }
+    if (reader.getNextIndex() != index) {
+      reader.reset(index);
+    }
+    if (reader.hasNext()) {
+      Indexed<LogEntry> entry = reader.next();
+      if (entry.index() == index) {
+        return entry.entry().getTerm();
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Returns the first index of the term of the entry at the given index.
+   * <p>
+   * Terms never decrease through the journal, so the start of the term is found by binary search.
+   *
+   * @param index the index of an entry in the term
+   * @return the first index in the journal with the same term as the entry at the given index
+   */
+  public long getTermStartIndex(long index) {
+    long term = getTerm(index);
+    long low = getFirstIndex();
+    long high = index;
+    while (low < high) {
+      long mid = (low + high) >>> 1;
+      if (getTerm(mid) < term) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the last index of an entry with a term less than or equal to the given term.
+   * <p>
+   * Terms never decrease through the journal, so the index is found by binary search.
+   *
+   * @param term the term for which to search
+   * @return the last index of an entry with a term less than or equal to the given term, or the index preceding the
+   * first index in the journal if no such entry exists
+   */
+  public long getLastIndexForTerm(long term) {
+    long low = getFirstIndex() - 1;
+    long high = writer.getLastIndex();
+    while (low < high) {
+      long mid = (low + high + 1) >>> 1;
+      if (getTerm(mid) <= term) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
   /**
    * Compacts logs if necessary.
    */
   public void compact() {
-    compactBySize();
-    compactByAge();
+    long startTime = System.nanoTime();
+    fetcher.exclusive(() -> {
+      compactBySize();
+      compactByAge();
+    });
+    compactionTime.record(System.nanoTime() - startTime);
+    updateMetrics();
+  }
+
+  /**
+   * Updates the journal metrics.
+   * <p>
+   * Journal metrics are computed on the server thread and published through volatile fields so that exporters can
+   * read them from any thread without accessing the journal.
+   */
+  private void updateMetrics() {
+    long size = journal.size();
+    long entries = writer.getLastIndex() - reader.getFirstIndex() + 1;
+    journalSize = size;
+    segmentCount = journal.segments().size();
+    entrySize = entries > 0 ? size / entries : 0;
   }
 
   /**
@@ -317,11 +702,124 @@ public class DistributedLogServerContext implements Managed<Void> {
     }
   }
 
+  /**
+   * Compresses the journal's closed segments in the background.
+   * <p>
+   * The closed segments holding only committed entries are rewritten by the {@link SegmentCompressor} with their
+   * values compressed, while the tail of the journal is left untouched. The rewritten segments include segments
+   * already compressed by an earlier rewrite, so segments are only rewritten once the segments written since the last
+   * rewrite are at least as large as the segments it compressed, which keeps the cost of rewriting proportional to the
+   * size of the journal. Once rewritten, the journal is briefly closed, and requests rejected, while the rewritten
+   * segments are swapped in.
+   *
+   * @return a future to be completed once the rewritten segments have been swapped in, or no segments need rewriting
+   */
+  public CompletableFuture<Void> compress() {
+    if (compressor == null || compressing || !journalOpen) {
+      return CompletableFuture.completedFuture(null);
+    }
+    List<JournalSegment<LogEntry>> segments = new ArrayList<>(journal.segments());
+    int boundary = segments.size() - 1;
+    while (boundary > 0 && segments.get(boundary).index() - 1 > commitIndex) {
+      boundary--;
+    }
+    if (boundary == 0) {
+      return CompletableFuture.completedFuture(null);
+    }
+    long lastIndex = segments.get(boundary).index() - 1;
+    long compressedSize = 0;
+    long uncompressedSize = 0;
+    List<File> replaced = new ArrayList<>();
+    for (JournalSegment<LogEntry> segment : segments.subList(0, boundary)) {
+      if (segment.lastIndex() <= compressedIndex) {
+        compressedSize += segment.size();
+      } else {
+        uncompressedSize += segment.size();
+      }
+      replaced.add(segment.file().file());
+    }
+    if (lastIndex <= compressedIndex || uncompressedSize < compressedSize) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    compressing = true;
+    long firstIndex = segments.get(0).index();
+    long boundaryId = segments.get(boundary).id();
+    return compressor.rewrite(journal.openReader(firstIndex), lastIndex, fetcher)
+        .thenComposeAsync(files -> installCompressed(files, replaced, firstIndex, lastIndex, boundaryId), threadContext)
+        .whenCompleteAsync((result, error) -> compressing = false, threadContext);
+  }
+
+  /**
+   * Swaps the rewritten segment files in for the segment files they were rewritten from.
+   * <p>
+   * The rewritten files are discarded if the journal was compacted since they were read, or if the rewritten segment
+   * IDs would collide with the IDs of the segments that follow them.
+   */
+  private CompletableFuture<Void> installCompressed(
+      NavigableMap<Long, File> files, List<File> replaced, long firstIndex, long lastIndex, long boundaryId) {
+    if (!journalOpen || getFirstIndex() != firstIndex || files.isEmpty() || files.lastKey() >= boundaryId) {
+      compressor.discard();
+      return CompletableFuture.completedFuture(null);
+    }
+    return closeJournal(true).thenRun(() -> {
+      try {
+        installer.stage(files, replaced);
+        installer.commit(checkpoint.toBuilder()
+            .setCompressedIndex(lastIndex)
+            .build());
+      } catch (IOException e) {
+        log.warn("Failed to stage compressed segments", e);
+        compressor.discard();
+        open();
+        recover();
+        role.reopen();
+        return;
+      }
+      replaceSegments();
+      log.info("Compressed journal segments up to index {}", lastIndex);
+    });
+  }
+
   @Override
   public CompletableFuture<Void> start() {
-    registerListeners();
-    compactTimer = threadContext.schedule(Duration.ofSeconds(30), this::compact);
-    return termProvider.addListener(termChangeListener)
+    metrics.gauge(metricId("log.journal.size"), () -> journalSize);
+    metrics.gauge(metricId("log.journal.segments"), () -> segmentCount);
+    return CompletableFuture.runAsync(() -> {
+      try {
+        installer.replace(metaStore);
+      } catch (IOException e) {
+        throw new StorageException(e);
+      }
+      open();
+      recover();
+      updateMetrics();
+
+      // Requests and timers are only accepted once the journal has been opened and the server state recovered.
+      compactTimer = threadContext.schedule(Duration.ofSeconds(30), () -> {
+        if (journalOpen) {
+          compact();
+        }
+      });
+      checkpointTimer = threadContext.schedule(checkpointInterval, checkpointInterval, () -> {
+        if (journalOpen) {
+          checkpoint();
+        }
+      });
+      if (compressor != null) {
+        compressTimer = threadContext.schedule(COMPRESS_INTERVAL, COMPRESS_INTERVAL, () -> {
+          if (journalOpen) {
+            compress().whenComplete((result, error) -> {
+              if (error != null) {
+                log.warn("Failed to compress journal segments", error);
+              }
+            });
+          }
+        });
+      }
+      registerListeners();
+    }, threadContext)
+        .thenCompose(v -> termProvider.addListener(termChangeListener))
         .thenComposeAsync(v -> termProvider.join(), threadContext)
         .thenComposeAsync(v -> termProvider.getTerm(), threadContext)
         .thenAcceptAsync(term -> changeRole(term), threadContext)
@@ -331,6 +829,124 @@ public class DistributedLogServerContext implements Managed<Void> {
         });
   }
 
+  /**
+   * Opens the journal.
+   */
+  private void open() {
+    long startTime = System.currentTimeMillis();
+    journal = journalFactory.get();
+    writer = journal.writer();
+    flushedIndex = writer.getLastIndex();
+    if (!flushInterval.isZero()) {
+      flusher = new JournalFlusher(serverId, journal, threadContext, flushInterval, flushSize, flushTime, log);
+    }
+    reader = journal.openReader(1);
+    fetcher = new JournalFetcher(serverId, journal);
+    journalOpen = true;
+    log.debug("Opened journal in {} ms", System.currentTimeMillis() - startTime);
+  }
+
+  /**
+   * Closes the journal once the flusher and the fetcher have been drained and a running segment rewrite has stopped.
+   * <p>
+   * Requests are rejected from the moment the journal starts closing, so no entries are appended while the flusher
+   * drains.
+   *
+   * @param checkpoint whether to checkpoint the server state before the journal is closed
+   * @return a future to be completed on the server thread once the journal has been closed
+   */
+  private CompletableFuture<Void> closeJournal(boolean checkpoint) {
+    if (!journalOpen) {
+      return CompletableFuture.completedFuture(null);
+    }
+    journalOpen = false;
+    CompletableFuture<Void> flushed = flusher != null ? flusher.close() : CompletableFuture.completedFuture(null);
+    CompletableFuture<Void> cancelled = compressor != null
+        ? compressor.cancel()
+        : CompletableFuture.completedFuture(null);
+    return flushed.thenCompose(v -> cancelled).thenCompose(v -> fetcher.close()).thenRunAsync(() -> {
+      flusher = null;
+      fetcher = null;
+      if (checkpoint) {
+        checkpoint();
+      }
+      reader.close();
+      journal.close();
+      journal = null;
+    }, threadContext);
+  }
+
+  /**
+   * Recovers the server state from the last checkpoint.
+   * <p>
+   * The commit index and producer sessions are restored from the checkpoint, and only entries written to the journal
+   * after the checkpoint are read to bring the producer sessions up to date.
+   */
+  private void recover() {
+    checkpoint = metaStore.load();
+    long lastIndex = writer.getLastIndex();
+    commitIndex = Math.min(checkpoint.getCommitIndex(), lastIndex);
+    compressedIndex = checkpoint.getCompressedIndex();
+    writer.commit(commitIndex);
+
+    sessions.restore(checkpoint.getSessionsList());
+    if (checkpoint.getLastIndex() > lastIndex) {
+      sessions.truncate(lastIndex);
+    }
+    recordSessions(Math.min(checkpoint.getLastIndex(), lastIndex) + 1);
+    log.debug("Recovered commit index {} of {}", commitIndex, lastIndex);
+  }
+
+  /**
+   * Records the producer sequence numbers of the entries in the journal starting at the given index.
+   *
+   * @param index the index from which to read entries
+   */
+  private void recordSessions(long index) {
+    try (JournalReader<LogEntry> reader = journal.openReader(index)) {
+      while (reader.hasNext()) {
+        Indexed<LogEntry> entry = reader.next();
+        if (!entry.entry().getProducerId().isEmpty()) {
+          sessions.record(
+              entry.entry().getProducerId(), entry.entry().getSequence(), entry.index(), entry.entry().getTimestamp());
+        }
+      }
+    }
+  }
+
+  /**
+   * Checkpoints the commit index and producer sessions.
+   * <p>
+   * The stored commit index never exceeds the entries persisted in the journal. When group flushing is enabled, the
+   * commit index is checkpointed only up to the last entry flushed by the flusher, and the server thread never flushes
+   * the journal itself. Otherwise, the journal is flushed before the checkpoint is stored, unless no entries were
+   * written since the last checkpoint, in which case they were already flushed by it.
+   */
+  private void checkpoint() {
+    updateMetrics();
+    long lastIndex = writer.getLastIndex();
+    long commitIndex = flusher != null ? Math.min(this.commitIndex, flusher.flushedIndex()) : this.commitIndex;
+    if (commitIndex == checkpoint.getCommitIndex() && lastIndex == checkpoint.getLastIndex()) {
+      return;
+    }
+    try {
+      if (flusher == null && lastIndex != checkpoint.getLastIndex()) {
+        writer.flush();
+        flushedIndex = lastIndex;
+      }
+      LogMetadata checkpoint = LogMetadata.newBuilder()
+          .setCommitIndex(commitIndex)
+          .setLastIndex(lastIndex)
+          .addAllSessions(sessions.snapshot())
+          .setCompressedIndex(compressedIndex)
+          .build();
+      metaStore.store(checkpoint);
+      this.checkpoint = checkpoint;
+    } catch (StorageException e) {
+      log.warn("Failed to checkpoint commit index", e);
+    }
+  }
+
   /**
    * Changes the roles.
    */
@@ -379,6 +995,13 @@ public class DistributedLogServerContext implements Managed<Void> {
     return runOnContext(() -> role.backup(request));
   }
 
+  /**
+   * Handles an install request.
+   */
+  private CompletableFuture<InstallResponse> install(InstallRequest request) {
+    return runOnContext(() -> role.install(request));
+  }
+
   /**
    * Handles a read request.
    */
@@ -387,15 +1010,28 @@ public class DistributedLogServerContext implements Managed<Void> {
   }
 
   /**
-   * Handles a reset request.
+   * Handles a fetch request.
    */
-  private void reset(ResetRequest request) {
-    role.reset(request);
+  private CompletableFuture<FetchResponse> fetch(FetchRequest request) {
+    return runOnContext(() -> role.fetch(request));
+  }
+
+  /**
+   * Handles a consume session control message.
+   */
+  private void control(ConsumeControl control) {
+    if (journalOpen) {
+      role.control(control);
+    }
   }
 
   private <R> CompletableFuture<R> runOnContext(Supplier<CompletableFuture<R>> function) {
     CompletableFuture<R> future = new CompletableFuture<>();
     threadContext.execute(() -> {
+      if (!journalOpen) {
+        future.completeExceptionally(new IllegalStateException("Journal unavailable"));
+        return;
+      }
       function.get().whenComplete((response, error) -> {
         if (error == null) {
           future.complete(response);
@@ -414,7 +1050,9 @@ public class DistributedLogServerContext implements Managed<Void> {
     protocol.registerAppendHandler(this::append);
     protocol.registerBackupHandler(this::backup);
     protocol.registerConsumeHandler(this::consume);
-    protocol.registerResetConsumer(this::reset, threadContext);
+    protocol.registerFetchHandler(this::fetch);
+    protocol.registerInstallHandler(this::install);
+    protocol.registerConsumeControlConsumer(this::control, threadContext);
   }
 
   /**
@@ -424,7 +1062,9 @@ public class DistributedLogServerContext implements Managed<Void> {
     protocol.unregisterAppendHandler();
     protocol.unregisterBackupHandler();
     protocol.unregisterConsumeHandler();
-    protocol.unregisterResetConsumer();
+    protocol.unregisterFetchHandler();
+    protocol.unregisterInstallHandler();
+    protocol.unregisterConsumeControlConsumer();
   }
 
   @Override
@@ -435,16 +1075,29 @@ public class DistributedLogServerContext implements Managed<Void> {
   @Override
   public CompletableFuture<Void> stop() {
     unregisterListeners();
-    if (compactTimer != null) {
-      compactTimer.cancel();
-    }
-    role.close();
-    journal.close();
-    started.set(false);
-    return termProvider.removeListener(termChangeListener).thenRunAsync(() -> {
-      if (closeOnStop) {
-        threadContextFactory.close();
+    metrics.remove(metricId("log.journal.size"));
+    metrics.remove(metricId("log.journal.segments"));
+    return CompletableFuture.runAsync(() -> {
+      if (compactTimer != null) {
+        compactTimer.cancel();
       }
-    });
+      if (checkpointTimer != null) {
+        checkpointTimer.cancel();
+      }
+      if (compressTimer != null) {
+        compressTimer.cancel();
+      }
+      role.close();
+      installer.close();
+    }, threadContext)
+        .thenComposeAsync(v -> closeJournal(true), threadContext)
+        .thenCompose(v -> compressor != null ? compressor.close() : CompletableFuture.completedFuture(null))
+        .thenRun(() -> started.set(false))
+        .thenCompose(v -> termProvider.removeListener(termChangeListener))
+        .thenRunAsync(() -> {
+          if (closeOnStop) {
+            threadContextFactory.close();
+          }
+        });
   }
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.atomix.protocols.log.LogEntry;
+import io.atomix.protocols.log.protocol.EntryCompression;
+import io.atomix.protocols.log.protocol.LogRecord;
+import io.atomix.storage.journal.Indexed;
+import io.atomix.storage.journal.JournalReader;
+import io.atomix.storage.journal.SegmentedJournal;
+
+/**
+ * Journal reader for fetch requests.
+ * <p>
+ * Fetched entries are read on a dedicated thread through the fetcher's own journal reader, so a fetch never blocks
+ * the server thread while it reads and decodes its entries. The server thread captures the committed range of the
+ * journal before a fetch is handed to the fetcher, and the fetcher never reads beyond it. Deleting segments and
+ * resetting readers is not safe while another thread reads the journal, so the server thread compacts and truncates
+ * the journal only while holding the fetcher's lock, which the fetcher thread holds while it reads, and closes the
+ * journal only once the fetcher has been closed.
+ */
+final class JournalFetcher {
+  private final JournalReader<LogEntry> reader;
+  private final ExecutorService executor;
+  private final Lock lock = new ReentrantLock();
+
+  JournalFetcher(String serverId, SegmentedJournal<LogEntry> journal) {
+    this.reader = journal.openReader(1);
+    this.executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("log-fetcher-" + serverId + "-%d")
+        .setDaemon(true)
+        .build());
+  }
+
+  /**
+   * Reads committed records on the fetcher thread.
+   * <p>
+   * Records are read until the next record would exceed the given size, but at least one record is read if any is
+   * available.
+   *
+   * @param index    the index from which to read
+   * @param endIndex the index of the last record to read, which must be committed
+   * @param maxBytes the maximum number of bytes to read
+   * @return a future to be completed with the records read
+   */
+  CompletableFuture<List<LogRecord>> read(long index, long endIndex, int maxBytes) {
+    try {
+      return CompletableFuture.supplyAsync(() -> {
+        lock.lock();
+        try {
+          return readRecords(index, endIndex, maxBytes);
+        } finally {
+          lock.unlock();
+        }
+      }, executor);
+    } catch (RejectedExecutionException e) {
+      CompletableFuture<List<LogRecord>> future = new CompletableFuture<>();
+      future.completeExceptionally(new IllegalStateException("Journal closed"));
+      return future;
+    }
+  }
+
+  private List<LogRecord> readRecords(long index, long endIndex, int maxBytes) {
+    if (reader.getNextIndex() != index) {
+      reader.reset(index);
+    }
+    List<LogRecord> records = new ArrayList<>();
+    int bytes = 0;
+    while (reader.hasNext() && reader.getNextIndex() <= endIndex) {
+      Indexed<LogEntry> entry = reader.next();
+      bytes += entry.entry().getValue().size();
+      if (bytes > maxBytes && !records.isEmpty()) {
+        reader.reset(entry.index());
+        break;
+      }
+      records.add(LogRecord.newBuilder()
+          .setIndex(entry.index())
+          .setTimestamp(entry.entry().getTimestamp())
+          .setValue(EntryCompression.decompress(entry.entry().getValue(), entry.entry().getCompression()))
+          .build());
+    }
+    return records;
+  }
+
+  /**
+   * Runs the given journal operation on the calling thread while no fetch is being read.
+   *
+   * @param operation the operation to run
+   */
+  void exclusive(Runnable operation) {
+    lock.lock();
+    try {
+      operation.run();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stops reading and closes the fetcher's reader once queued fetches have been read.
+   *
+   * @return a future to be completed once the fetcher's reader has been closed
+   */
+  CompletableFuture<Void> close() {
+    CompletableFuture<Void> closed = CompletableFuture.runAsync(() -> exclusive(reader::close), executor);
+    executor.shutdown();
+    return closed;
+  }
+}
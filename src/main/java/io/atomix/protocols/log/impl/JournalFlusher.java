@@ -0,0 +1,263 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.atomix.protocols.log.LogEntry;
+import io.atomix.protocols.log.metrics.Histogram;
+import io.atomix.storage.StorageException;
+import io.atomix.storage.journal.JournalSegment;
+import io.atomix.storage.journal.SegmentedJournal;
+import io.atomix.utils.concurrent.Scheduled;
+import io.atomix.utils.concurrent.ThreadContext;
+import org.slf4j.Logger;
+
+/**
+ * Group journal flusher.
+ * <p>
+ * The journal is flushed on a dedicated thread so the server thread never waits for the disk. The journal writer is not
+ * thread safe, so rather than flushing through the writer, the server thread captures the files of the segments holding
+ * the entries to flush, and the flusher thread forces those files to disk through its own channels. A flush therefore
+ * covers every segment the entries were written to, even if the writer has since rolled over to a new segment. Only one
+ * flush runs at a time, and a flush starts once the flush interval has passed since the previous flush started, or as
+ * soon as the previous flush completes once the flush size has been appended, so entries appended while a flush is
+ * running are flushed together by the next one. Futures waiting for entries to be flushed are completed on the server
+ * thread by the first flush started after the entries were appended.
+ * <p>
+ * All methods must be called on the server thread.
+ */
+final class JournalFlusher {
+  private final SegmentedJournal<LogEntry> journal;
+  private final ThreadContext threadContext;
+  private final Duration interval;
+  private final long size;
+  private final Histogram flushTime;
+  private final Logger log;
+  private final ExecutorService executor;
+  private final NavigableMap<Long, List<CompletableFuture<Void>>> futures = new TreeMap<>();
+  private long appendedIndex;
+  private long appendedBytes;
+  private long flushingIndex;
+  private long flushedIndex;
+  private long lastFlush;
+  private boolean flushing;
+  private boolean open = true;
+  private Scheduled timer;
+
+  JournalFlusher(
+      String serverId,
+      SegmentedJournal<LogEntry> journal,
+      ThreadContext threadContext,
+      Duration interval,
+      long size,
+      Histogram flushTime,
+      Logger log) {
+    this.journal = journal;
+    this.threadContext = threadContext;
+    this.interval = interval;
+    this.size = size;
+    this.flushTime = flushTime;
+    this.log = log;
+    this.appendedIndex = journal.writer().getLastIndex();
+    this.flushedIndex = appendedIndex;
+    this.lastFlush = System.nanoTime() - interval.toNanos();
+    this.executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("log-flusher-" + serverId + "-%d")
+        .setDaemon(true)
+        .build());
+  }
+
+  /**
+   * Records an entry appended to the journal.
+   *
+   * @param index the index of the appended entry
+   * @param bytes the size of the appended entry in bytes
+   */
+  void appended(long index, int bytes) {
+    appendedIndex = index;
+    appendedBytes += bytes;
+    schedule();
+  }
+
+  /**
+   * Records the journal being truncated.
+   * <p>
+   * Entries following the given index may be appended again, so they must be flushed again.
+   *
+   * @param index the index after which the journal was truncated
+   */
+  void truncated(long index) {
+    appendedIndex = index;
+    flushingIndex = Math.min(flushingIndex, index);
+    flushedIndex = Math.min(flushedIndex, index);
+  }
+
+  /**
+   * Returns the index of the last entry known to be flushed.
+   *
+   * @return the index of the last entry known to be flushed
+   */
+  long flushedIndex() {
+    return flushedIndex;
+  }
+
+  /**
+   * Returns a future to be completed once the entry at the given index has been flushed.
+   *
+   * @param index the index of the entry
+   * @return a future to be completed once the entry has been flushed
+   */
+  CompletableFuture<Void> flush(long index) {
+    if (index <= flushedIndex) {
+      return CompletableFuture.completedFuture(null);
+    }
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    if (!open) {
+      future.completeExceptionally(new IllegalStateException("Journal closed"));
+      return future;
+    }
+    futures.computeIfAbsent(index, i -> new ArrayList<>()).add(future);
+    schedule();
+    return future;
+  }
+
+  /**
+   * Starts a flush if entries are waiting to be flushed and the flush policy allows it, or schedules one.
+   */
+  private void schedule() {
+    if (!open || flushing || appendedIndex <= flushedIndex) {
+      return;
+    }
+    long delay = lastFlush + interval.toNanos() - System.nanoTime();
+    if (delay <= 0 || appendedBytes >= size) {
+      flush();
+    } else if (timer == null) {
+      timer = threadContext.schedule(Duration.ofNanos(delay), () -> {
+        timer = null;
+        schedule();
+      });
+    }
+  }
+
+  /**
+   * Flushes the entries appended so far on the flusher thread.
+   */
+  private void flush() {
+    if (timer != null) {
+      timer.cancel();
+      timer = null;
+    }
+    flushing = true;
+    flushingIndex = appendedIndex;
+    appendedBytes = 0;
+    lastFlush = System.nanoTime();
+    long startTime = lastFlush;
+    List<File> files = new ArrayList<>();
+    for (JournalSegment<LogEntry> segment : journal.segments(flushedIndex + 1)) {
+      files.add(segment.file().file());
+    }
+    CompletableFuture.runAsync(() -> force(files), executor).whenCompleteAsync((result, error) -> {
+      flushing = false;
+      if (!open) {
+        return;
+      }
+      if (error == null) {
+        flushTime.record(System.nanoTime() - startTime);
+        flushedIndex = Math.max(flushedIndex, flushingIndex);
+        NavigableMap<Long, List<CompletableFuture<Void>>> flushed = futures.headMap(flushedIndex, true);
+        flushed.values().forEach(waiting -> waiting.forEach(future -> future.complete(null)));
+        flushed.clear();
+      } else {
+        // The entries remain unflushed, so they're flushed again by the next flush, but waiting futures are failed
+        // rather than left waiting on a disk that may never recover.
+        log.warn("Failed to flush journal", error);
+        NavigableMap<Long, List<CompletableFuture<Void>>> failed = futures.headMap(flushingIndex, true);
+        StorageException exception = new StorageException(error instanceof CompletionException
+            ? error.getCause() : error);
+        failed.values().forEach(waiting -> waiting.forEach(future -> future.completeExceptionally(exception)));
+        failed.clear();
+      }
+      schedule();
+    }, threadContext);
+  }
+
+  /**
+   * Forces the given segment files to disk.
+   */
+  private static void force(List<File> files) {
+    for (File file : files) {
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+        channel.force(true);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Stops flushing and drains the flusher.
+   * <p>
+   * Entries still waiting for a flush are flushed on the flusher thread once a running flush has completed, so futures
+   * waiting for them, such as acknowledgements of entries to the leader, are completed rather than failed. The futures
+   * are failed only if the final flush fails. The returned future is completed on the server thread once the flusher
+   * has been drained, and the journal must not be closed until then.
+   *
+   * @return a future to be completed once the flusher has been drained
+   */
+  CompletableFuture<Void> close() {
+    open = false;
+    if (timer != null) {
+      timer.cancel();
+      timer = null;
+    }
+    long index = appendedIndex;
+    List<File> files = new ArrayList<>();
+    if (!futures.isEmpty()) {
+      for (JournalSegment<LogEntry> segment : journal.segments(flushedIndex + 1)) {
+        files.add(segment.file().file());
+      }
+    }
+    CompletableFuture<Void> drained = CompletableFuture.runAsync(() -> force(files), executor);
+    executor.shutdown();
+    return drained.handleAsync((result, error) -> {
+      if (error == null) {
+        flushedIndex = index;
+        futures.values().forEach(waiting -> waiting.forEach(future -> future.complete(null)));
+      } else {
+        log.warn("Failed to flush journal", error);
+        futures.values().forEach(waiting -> waiting.forEach(future ->
+            future.completeExceptionally(new IllegalStateException("Journal closed"))));
+      }
+      futures.clear();
+      return null;
+    }, threadContext);
+  }
+}
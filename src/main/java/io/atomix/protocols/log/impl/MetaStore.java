@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import io.atomix.protocols.log.LogMetadata;
+import io.atomix.storage.StorageException;
+
+/**
+ * Log server metadata store.
+ * <p>
+ * Metadata is written to a temporary file which then atomically replaces the metadata file, so a failure while
+ * storing metadata leaves the previous checkpoint intact.
+ */
+public class MetaStore {
+  private final Path file;
+  private final Path tempFile;
+
+  public MetaStore(File directory, String name) {
+    this.file = directory.toPath().resolve(name + ".meta");
+    this.tempFile = directory.toPath().resolve(name + ".meta.tmp");
+  }
+
+  /**
+   * Loads the stored metadata.
+   *
+   * @return the stored metadata or the default metadata if no metadata has been stored
+   * @throws StorageException if the metadata cannot be read
+   */
+  public LogMetadata load() {
+    if (!Files.exists(file)) {
+      return LogMetadata.getDefaultInstance();
+    }
+    try (InputStream input = Files.newInputStream(file)) {
+      return LogMetadata.parseFrom(input);
+    } catch (IOException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  /**
+   * Durably stores the given metadata.
+   *
+   * @param metadata the metadata to store
+   * @throws StorageException if the metadata cannot be written
+   */
+  public void store(LogMetadata metadata) {
+    try {
+      Files.createDirectories(file.getParent());
+      try (FileChannel channel = FileChannel.open(tempFile,
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        ByteBuffer buffer = metadata.toByteString().asReadOnlyByteBuffer();
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        channel.force(true);
+      }
+      Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new StorageException(e);
+    }
+  }
+}
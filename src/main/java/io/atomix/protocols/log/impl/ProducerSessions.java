@@ -0,0 +1,250 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log.impl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.atomix.protocols.log.ProducerSessionSnapshot;
+
+/**
+ * Producer sessions.
+ * <p>
+ * Tracks the last sequence number appended by each producer along with the indexes of a window of recently appended
+ * sequence numbers. Sessions are maintained by both the leader and its followers from the entries written to the
+ * journal, so a new leader can continue to detect duplicate and out-of-order appends after a leader change. Sessions
+ * are not thread-safe and must only be accessed on the server thread.
+ * <p>
+ * A session expires once no entry has been appended by its producer for the session timeout, measured with the
+ * timestamps of the entries rather than the local clock so every server expires the same sessions. At most 1024
+ * sessions are tracked, and once that many producers are known, the session of the producer that appended least
+ * recently is evicted. Every server records the same entries in the same order, so every server evicts
+ * the same sessions.
+ */
+public class ProducerSessions {
+  private static final int WINDOW_SIZE = 128;
+  private static final int MAX_SESSIONS = 1024;
+
+  private final long timeout;
+  private final Map<String, Session> sessions = new LinkedHashMap<>();
+
+  public ProducerSessions(Duration timeout) {
+    this.timeout = timeout.toMillis();
+  }
+
+  /**
+   * Returns the index at which the given sequence number was appended by the given producer.
+   *
+   * @param producerId the producer identifier
+   * @param sequence   the sequence number
+   * @return the index at which the sequence number was appended or {@code 0} if the sequence number is unknown
+   */
+  public long getIndex(String producerId, long sequence) {
+    Session session = sessions.get(producerId);
+    if (session == null
+        || sequence > session.sequence
+        || sequence < session.firstSequence
+        || sequence <= session.sequence - WINDOW_SIZE) {
+      return 0;
+    }
+    return session.indexes[(int) (sequence % WINDOW_SIZE)];
+  }
+
+  /**
+   * Returns a boolean indicating whether the given sequence number is the next sequence number for the given producer.
+   * <p>
+   * A producer unknown to the server must start its session at sequence number {@code 1}.
+   *
+   * @param producerId the producer identifier
+   * @param sequence   the sequence number
+   * @return indicates whether the sequence number is the producer's next sequence number
+   */
+  public boolean isNext(String producerId, long sequence) {
+    Session session = sessions.get(producerId);
+    return session == null ? sequence == 1 : sequence == session.sequence + 1;
+  }
+
+  /**
+   * Records the index at which the given sequence number was appended by the given producer.
+   *
+   * @param producerId the producer identifier
+   * @param sequence   the sequence number
+   * @param index      the index at which the sequence number was appended
+   * @param timestamp  the timestamp of the appended entry
+   */
+  public void record(String producerId, long sequence, long index, long timestamp) {
+    // Sessions are kept in the order in which their producers last appended, so expired sessions are at the head.
+    Session session = sessions.remove(producerId);
+    if (session == null || sequence != session.sequence + 1) {
+      session = new Session(sequence);
+    }
+    sessions.put(producerId, session);
+    session.sequence = sequence;
+    session.indexes[(int) (sequence % WINDOW_SIZE)] = index;
+    session.timestamp = Math.max(session.timestamp, timestamp);
+    session.snapshot = null;
+    expire(timestamp);
+  }
+
+  /**
+   * Removes the sessions of producers that have not appended an entry within the session timeout, along with the
+   * sessions of the producers that appended least recently while too many producers are known.
+   *
+   * @param timestamp the timestamp of the latest entry
+   */
+  private void expire(long timestamp) {
+    Iterator<Session> iterator = sessions.values().iterator();
+    while (iterator.hasNext()) {
+      Session session = iterator.next();
+      if (timestamp - session.timestamp <= timeout && sessions.size() <= MAX_SESSIONS) {
+        break;
+      }
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Removes sequence numbers appended after the given index.
+   * <p>
+   * If the entire window of a session is removed, the session's earlier sequence numbers are unknown and the
+   * session itself is removed.
+   *
+   * @param index the index after which to remove sequence numbers
+   */
+  public void truncate(long index) {
+    Iterator<Session> iterator = sessions.values().iterator();
+    while (iterator.hasNext()) {
+      Session session = iterator.next();
+      long minSequence = session.minSequence();
+      while (session.sequence >= minSequence && session.indexes[(int) (session.sequence % WINDOW_SIZE)] > index) {
+        session.sequence--;
+        session.snapshot = null;
+      }
+      if (session.sequence < minSequence) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Returns a snapshot of the producer sessions.
+   * <p>
+   * The snapshot of each session is kept until the session changes, so only the sessions of producers that appended
+   * since the previous snapshot are copied.
+   *
+   * @return a snapshot of the producer sessions
+   */
+  public List<ProducerSessionSnapshot> snapshot() {
+    List<ProducerSessionSnapshot> snapshots = new ArrayList<>(sessions.size());
+    for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+      Session session = entry.getValue();
+      if (session.snapshot == null) {
+        session.snapshot = snapshot(entry.getKey(), session, session.sequence);
+      }
+      snapshots.add(session.snapshot);
+    }
+    return snapshots;
+  }
+
+  /**
+   * Returns a snapshot of the producer sessions as of the given index.
+   * <p>
+   * Sequence numbers appended after the index are left out, and so are sessions with no sequence number in their
+   * window appended at or before the index.
+   *
+   * @param index the index of the last entry to include in the snapshot
+   * @return a snapshot of the producer sessions as of the given index
+   */
+  public List<ProducerSessionSnapshot> snapshot(long index) {
+    List<ProducerSessionSnapshot> snapshots = new ArrayList<>(sessions.size());
+    for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+      Session session = entry.getValue();
+      long lastSequence = session.sequence;
+      while (lastSequence >= session.minSequence() && session.indexes[(int) (lastSequence % WINDOW_SIZE)] > index) {
+        lastSequence--;
+      }
+      if (lastSequence >= session.minSequence()) {
+        snapshots.add(snapshot(entry.getKey(), session, lastSequence));
+      }
+    }
+    return snapshots;
+  }
+
+  /**
+   * Returns a snapshot of the given session up to the given sequence number.
+   */
+  private static ProducerSessionSnapshot snapshot(String producerId, Session session, long lastSequence) {
+    ProducerSessionSnapshot.Builder snapshot = ProducerSessionSnapshot.newBuilder()
+        .setProducerId(producerId)
+        .setSequence(lastSequence)
+        .setTimestamp(session.timestamp);
+    for (long sequence = session.minSequence(); sequence <= lastSequence; sequence++) {
+      snapshot.addIndexes(session.indexes[(int) (sequence % WINDOW_SIZE)]);
+    }
+    return snapshot.build();
+  }
+
+  /**
+   * Restores the producer sessions from the given snapshots.
+   *
+   * @param snapshots the snapshots from which to restore the producer sessions
+   */
+  public void restore(Collection<ProducerSessionSnapshot> snapshots) {
+    sessions.clear();
+    for (ProducerSessionSnapshot snapshot : snapshots) {
+      if (snapshot.getIndexesCount() > 0) {
+        Session session = new Session(snapshot.getSequence() - snapshot.getIndexesCount() + 1);
+        for (long index : snapshot.getIndexesList()) {
+          session.sequence++;
+          session.indexes[(int) (session.sequence % WINDOW_SIZE)] = index;
+        }
+        session.timestamp = snapshot.getTimestamp();
+        session.snapshot = snapshot;
+        sessions.put(snapshot.getProducerId(), session);
+      }
+    }
+  }
+
+  /**
+   * Producer session.
+   */
+  private static final class Session {
+    private final long firstSequence;
+    private final long[] indexes = new long[WINDOW_SIZE];
+    private long sequence;
+    private long timestamp;
+    private ProducerSessionSnapshot snapshot;
+
+    Session(long firstSequence) {
+      this.firstSequence = firstSequence;
+      this.sequence = firstSequence - 1;
+    }
+
+    /**
+     * Returns the lowest sequence number in the session's window.
+     *
+     * @return the lowest sequence number in the session's window
+     */
+    long minSequence() {
+      return Math.max(firstSequence, sequence - WINDOW_SIZE + 1);
+    }
+  }
+}
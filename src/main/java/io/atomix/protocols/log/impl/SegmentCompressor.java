@@ -0,0 +1,191 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.ByteString;
+import io.atomix.protocols.log.Compression;
+import io.atomix.protocols.log.LogEntry;
+import io.atomix.protocols.log.protocol.EntryCompression;
+import io.atomix.storage.journal.Indexed;
+import io.atomix.storage.journal.JournalReader;
+import io.atomix.storage.journal.JournalSegment;
+import io.atomix.storage.journal.JournalWriter;
+import io.atomix.storage.journal.SegmentedJournal;
+
+/**
+ * Background compression of closed journal segments.
+ * <p>
+ * Closed segments are rewritten on a dedicated low-priority thread into a staging journal, in which entry values at
+ * least as large as the compression threshold are deflated. Values that are already compressed or don't shrink are
+ * copied as they are. The staging journal starts at the index of the first rewritten entry and rolls over to new
+ * segments like the journal, so the rewritten segments are indexed like any other segment, and the server thread
+ * then swaps them in for the segments they were read from with the {@link SegmentInstaller}. The journal is read in
+ * batches through the compressor's own reader while holding the fetcher's lock, so the server thread never compacts the
+ * journal while a batch is being read.
+ */
+final class SegmentCompressor {
+  private static final int BATCH_SIZE = 1024;
+
+  private final File directory;
+  private final int threshold;
+  private final Supplier<SegmentedJournal<LogEntry>> journalFactory;
+  private final ExecutorService executor;
+  private volatile boolean cancelled;
+
+  SegmentCompressor(
+      String serverId,
+      File directory,
+      int threshold,
+      Supplier<SegmentedJournal<LogEntry>> journalFactory) {
+    this.directory = directory;
+    this.threshold = threshold;
+    this.journalFactory = journalFactory;
+    this.executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("log-compressor-" + serverId + "-%d")
+        .setPriority(Thread.MIN_PRIORITY)
+        .setDaemon(true)
+        .build());
+  }
+
+  /**
+   * Rewrites the journal's entries up to the given index on the compressor thread.
+   * <p>
+   * The rewrite fails if the journal is compacted while it's being read, or if the compressor is cancelled.
+   *
+   * @param reader    a reader positioned at the first entry to rewrite, which is closed by the compressor
+   * @param lastIndex the index of the last entry to rewrite, which must be committed
+   * @param fetcher   the fetcher whose lock is held while the journal is read
+   * @return a future to be completed with the rewritten segment files by segment ID
+   */
+  CompletableFuture<NavigableMap<Long, File>> rewrite(
+      JournalReader<LogEntry> reader, long lastIndex, JournalFetcher fetcher) {
+    cancelled = false;
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return rewriteEntries(reader, lastIndex, fetcher);
+      } finally {
+        fetcher.exclusive(reader::close);
+      }
+    }, executor);
+  }
+
+  private NavigableMap<Long, File> rewriteEntries(
+      JournalReader<LogEntry> reader, long lastIndex, JournalFetcher fetcher) {
+    discard();
+    SegmentedJournal<LogEntry> journal = journalFactory.get();
+    try {
+      JournalWriter<LogEntry> writer = journal.writer();
+      writer.reset(reader.getNextIndex());
+      List<Indexed<LogEntry>> batch = new ArrayList<>(BATCH_SIZE);
+      while (writer.getLastIndex() < lastIndex) {
+        if (cancelled) {
+          throw new CancellationException();
+        }
+        batch.clear();
+        fetcher.exclusive(() -> {
+          while (batch.size() < BATCH_SIZE && reader.hasNext() && reader.getNextIndex() <= lastIndex) {
+            batch.add(reader.next());
+          }
+        });
+        if (batch.isEmpty() || batch.get(0).index() != writer.getNextIndex()) {
+          throw new IllegalStateException("Journal compacted while compressing segments");
+        }
+        for (Indexed<LogEntry> entry : batch) {
+          writer.append(compress(entry.entry()));
+        }
+      }
+      writer.flush();
+
+      NavigableMap<Long, File> files = new TreeMap<>();
+      for (JournalSegment<LogEntry> segment : journal.segments()) {
+        files.put(segment.id(), segment.file().file());
+      }
+      journal.close();
+      return files;
+    } catch (RuntimeException e) {
+      journal.close();
+      discard();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the given entry with its value compressed, if compressing the value reduces its size.
+   */
+  private LogEntry compress(LogEntry entry) {
+    if (entry.getCompression() != Compression.NONE || entry.getValue().size() < threshold) {
+      return entry;
+    }
+    ByteString value = EntryCompression.deflate(entry.getValue());
+    if (value.size() >= entry.getValue().size()) {
+      return entry;
+    }
+    return entry.toBuilder()
+        .setValue(value)
+        .setCompression(Compression.DEFLATE)
+        .build();
+  }
+
+  /**
+   * Deletes the segment files left by an earlier rewrite.
+   */
+  void discard() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * Cancels a running rewrite.
+   *
+   * @return a future to be completed once the compressor no longer reads the journal
+   */
+  CompletableFuture<Void> cancel() {
+    cancelled = true;
+    return CompletableFuture.runAsync(() -> {
+    }, executor);
+  }
+
+  /**
+   * Stops the compressor and deletes its staging directory.
+   *
+   * @return a future to be completed once the compressor has been stopped
+   */
+  CompletableFuture<Void> close() {
+    cancelled = true;
+    CompletableFuture<Void> closed = CompletableFuture.runAsync(() -> {
+      discard();
+      directory.delete();
+    }, executor);
+    executor.shutdown();
+    return closed;
+  }
+}
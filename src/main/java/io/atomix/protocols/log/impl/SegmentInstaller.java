@@ -0,0 +1,272 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import io.atomix.protocols.log.LogMetadata;
+import io.atomix.protocols.log.protocol.InstallRequest;
+import io.atomix.storage.journal.JournalSegmentFile;
+
+/**
+ * Staging area for the journal segment files installed by the leader or rewritten by the segment compressor.
+ * <p>
+ * Chunks of segment files are written to a staging directory as they are received, and each file is flushed once its
+ * last chunk has been written. The transfer is restarted when a chunk arrives from a new term or the leader starts
+ * sending a segment that precedes or repeats one already staged, and a chunk that does not follow the staged data is
+ * rejected so the leader restarts the transfer.
+ * <p>
+ * Once the last segment has been staged, the install is committed by storing the metadata with which to recover the
+ * installed journal in the staging directory and atomically renaming it to the install directory. A committed install
+ * replaces the journal's segment files in steps that can all be repeated, so an install interrupted by a crash is
+ * completed when the server restarts: the old segment files are deleted and a marker is written once they're all
+ * gone, the installed files are moved into the journal directory, the metadata is stored as the server's checkpoint,
+ * and finally the install directory is deleted.
+ * <p>
+ * Segment files rewritten by the {@link SegmentCompressor} are staged whole along with the names of the segment files
+ * they replace, and are committed and installed the same way, except that only the listed segment files are deleted
+ * and the rest of the journal is kept. Staging rewritten segments restarts a transfer from the leader.
+ * <p>
+ * All methods must be called on the server thread.
+ */
+final class SegmentInstaller implements AutoCloseable {
+  private static final String METADATA = "install";
+  private static final String REPLACED = "replaced";
+  private static final String REPLACES = "replaces";
+  private static final String EXTENSION = ".log";
+
+  private final File journalDirectory;
+  private final String name;
+  private final File directory;
+  private final File installDirectory;
+  private final NavigableMap<Long, File> segments = new TreeMap<>();
+  private long term;
+  private long segmentId;
+  private long offset;
+  private FileChannel channel;
+
+  SegmentInstaller(File journalDirectory, String name) {
+    this.journalDirectory = journalDirectory;
+    this.name = name;
+    this.directory = new File(journalDirectory, name + "-install");
+    this.installDirectory = new File(journalDirectory, name + "-installed");
+  }
+
+  /**
+   * Writes a chunk of a segment file to the staging directory.
+   *
+   * @param request the install request carrying the chunk
+   * @return indicates whether the chunk follows the staged data and was written
+   * @throws IOException if the chunk cannot be written
+   */
+  boolean write(InstallRequest request) throws IOException {
+    if (request.getTerm() != term) {
+      reset();
+      term = request.getTerm();
+    }
+
+    if (request.getOffset() == 0) {
+      if (channel != null || (!segments.isEmpty() && request.getSegmentId() <= segments.lastKey())) {
+        reset();
+      }
+      directory.mkdirs();
+      File file = new File(directory, request.getSegmentId() + EXTENSION);
+      channel = FileChannel.open(file.toPath(),
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      segments.put(request.getSegmentId(), file);
+      segmentId = request.getSegmentId();
+      offset = 0;
+    } else if (channel == null || request.getSegmentId() != segmentId || request.getOffset() != offset) {
+      return false;
+    }
+
+    ByteBuffer data = request.getData().asReadOnlyByteBuffer();
+    while (data.hasRemaining()) {
+      offset += channel.write(data);
+    }
+    if (request.getSegmentComplete()) {
+      channel.force(true);
+      channel.close();
+      channel = null;
+    }
+    return true;
+  }
+
+  /**
+   * Stages segment files rewritten from the journal's segment files.
+   *
+   * @param files    the rewritten segment files by segment ID, which are moved to the staging directory
+   * @param replaced the journal's segment files replaced by the rewritten segment files
+   * @throws IOException if the segment files cannot be staged
+   */
+  void stage(Map<Long, File> files, Collection<File> replaced) throws IOException {
+    reset();
+    try {
+      directory.mkdirs();
+      for (Map.Entry<Long, File> entry : files.entrySet()) {
+        File file = new File(directory, entry.getKey() + EXTENSION);
+        Files.move(entry.getValue().toPath(), file.toPath());
+        segments.put(entry.getKey(), file);
+      }
+      List<String> names = new ArrayList<>();
+      for (File file : replaced) {
+        names.add(file.getName());
+      }
+      File list = new File(directory, REPLACES);
+      Files.write(list.toPath(), names, StandardCharsets.UTF_8);
+      try (FileChannel channel = FileChannel.open(list.toPath(), StandardOpenOption.WRITE)) {
+        channel.force(true);
+      }
+    } catch (IOException | RuntimeException e) {
+      reset();
+      throw e;
+    }
+  }
+
+  /**
+   * Commits the staged segment files, after which they replace the journal even if the server crashes.
+   * <p>
+   * If the install cannot be committed, the staged files are discarded and the journal is left untouched.
+   *
+   * @param metadata the metadata with which to recover the installed journal
+   * @throws IOException if the install cannot be committed
+   */
+  void commit(LogMetadata metadata) throws IOException {
+    try {
+      if (channel != null || segments.isEmpty()) {
+        throw new IOException("No complete segments staged");
+      }
+      new MetaStore(directory, METADATA).store(metadata);
+      sync(directory);
+      Files.move(directory.toPath(), installDirectory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      sync(journalDirectory);
+      segments.clear();
+    } catch (IOException | RuntimeException e) {
+      reset();
+      throw e;
+    }
+  }
+
+  /**
+   * Replaces the journal's segment files with the segment files of a committed install, if any.
+   * <p>
+   * The journal must be closed. Files staged by an interrupted transfer are discarded. Every step of the replacement
+   * may be repeated, so if it fails, calling this method again, for instance when the server restarts, completes it.
+   *
+   * @param metaStore the store in which to store the installed journal's metadata
+   * @return the installed journal's metadata or {@code null} if no install was committed
+   * @throws IOException if the segment files cannot be replaced
+   */
+  LogMetadata replace(MetaStore metaStore) throws IOException {
+    reset();
+    if (!installDirectory.exists()) {
+      return null;
+    }
+
+    LogMetadata metadata = new MetaStore(installDirectory, METADATA).load();
+    File replaced = new File(installDirectory, REPLACED);
+    if (!replaced.exists()) {
+      // Until the marker is written, the journal directory holds only old segment files. Rewritten segments replace
+      // only the segment files they list.
+      File list = new File(installDirectory, REPLACES);
+      File[] files = list.exists()
+          ? Files.readAllLines(list.toPath(), StandardCharsets.UTF_8).stream()
+              .map(fileName -> new File(journalDirectory, fileName))
+              .toArray(File[]::new)
+          : journalDirectory.listFiles(file -> JournalSegmentFile.isSegmentFile(name, file));
+      if (files != null) {
+        for (File file : files) {
+          Files.deleteIfExists(file.toPath());
+        }
+      }
+      sync(journalDirectory);
+      Files.createFile(replaced.toPath());
+      sync(installDirectory);
+    }
+
+    File[] files = installDirectory.listFiles(file -> file.getName().endsWith(EXTENSION));
+    if (files != null) {
+      for (File file : files) {
+        long id = Long.parseLong(file.getName().substring(0, file.getName().length() - EXTENSION.length()));
+        Files.move(file.toPath(), JournalSegmentFile.createSegmentFile(name, journalDirectory, id).toPath());
+      }
+    }
+    sync(journalDirectory);
+    metaStore.store(metadata);
+    delete(installDirectory);
+    Files.delete(installDirectory.toPath());
+    sync(journalDirectory);
+    return metadata;
+  }
+
+  /**
+   * Discards the staged segment files.
+   */
+  void reset() {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        // The file is deleted anyway.
+      }
+      channel = null;
+    }
+    segments.clear();
+    delete(directory);
+  }
+
+  /**
+   * Deletes the files in the given directory.
+   */
+  private static void delete(File directory) {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * Forces the entries of the given directory to disk, where the platform supports it.
+   */
+  private static void sync(File directory) {
+    try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      // Directories cannot be opened for syncing on some platforms.
+    }
+  }
+
+  @Override
+  public void close() {
+    reset();
+    directory.delete();
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonically increasing counter.
+ * <p>
+ * Counters may be incremented concurrently from any thread without allocating.
+ */
+public class Counter {
+  private final LongAdder count = new LongAdder();
+
+  /**
+   * Increments the counter.
+   */
+  public void increment() {
+    count.increment();
+  }
+
+  /**
+   * Adds the given amount to the counter.
+   *
+   * @param amount the amount to add
+   */
+  public void add(long amount) {
+    count.add(amount);
+  }
+
+  /**
+   * Returns the current count.
+   *
+   * @return the current count
+   */
+  public long get() {
+    return count.sum();
+  }
+}
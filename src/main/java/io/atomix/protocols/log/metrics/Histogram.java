@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear histogram.
+ * <p>
+ * Values are counted in buckets whose width grows with the magnitude of the value, in the style of HdrHistogram:
+ * each power of two is divided into {@value #SUB_BUCKET_HALF_COUNT} linear sub-buckets, bounding the relative error of
+ * reported percentiles to under 2% across the full range of positive {@code long} values. Values may be recorded
+ * concurrently from any thread without allocating or locking.
+ */
+public class Histogram {
+  private static final int SUB_BUCKET_BITS = 7;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+  private static final int BUCKET_COUNT = (65 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Records the given value.
+   * <p>
+   * Negative values are recorded as {@code 0}.
+   *
+   * @param value the value to record
+   */
+  public void record(long value) {
+    long v = Math.max(value, 0);
+    counts.incrementAndGet(bucket(v));
+    count.increment();
+    sum.add(v);
+    min.accumulate(v);
+    max.accumulate(v);
+  }
+
+  /**
+   * Returns a snapshot of the histogram.
+   * <p>
+   * Values recorded concurrently with the snapshot may be partially reflected in it.
+   *
+   * @return a snapshot of the histogram
+   */
+  public HistogramSnapshot snapshot() {
+    long[] buckets = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      buckets[i] = counts.get(i);
+    }
+    long count = this.count.sum();
+    return new HistogramSnapshot(buckets, count, sum.sum(), count > 0 ? min.get() : 0, max.get());
+  }
+
+  /**
+   * Returns the bucket for the given value.
+   */
+  static int bucket(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+    return shift * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift);
+  }
+
+  /**
+   * Returns the highest value counted in the given bucket.
+   */
+  static long highestValue(int bucket) {
+    return bucket + 1 < BUCKET_COUNT ? lowestValue(bucket + 1) - 1 : Long.MAX_VALUE;
+  }
+
+  /**
+   * Returns the lowest value counted in the given bucket.
+   */
+  private static long lowestValue(int bucket) {
+    if (bucket < SUB_BUCKET_COUNT) {
+      return bucket;
+    }
+    int shift = (bucket >> (SUB_BUCKET_BITS - 1)) - 1;
+    return (long) (bucket - shift * SUB_BUCKET_HALF_COUNT) << shift;
+  }
+}
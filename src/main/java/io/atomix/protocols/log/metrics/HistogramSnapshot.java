@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log.metrics;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Point-in-time snapshot of a {@link Histogram}.
+ */
+public class HistogramSnapshot {
+  private final long[] buckets;
+  private final long count;
+  private final long sum;
+  private final long min;
+  private final long max;
+
+  HistogramSnapshot(long[] buckets, long count, long sum, long min, long max) {
+    this.buckets = buckets;
+    this.count = count;
+    this.sum = sum;
+    this.min = min;
+    this.max = max;
+  }
+
+  /**
+   * Returns the number of recorded values.
+   *
+   * @return the number of recorded values
+   */
+  public long count() {
+    return count;
+  }
+
+  /**
+   * Returns the sum of the recorded values.
+   *
+   * @return the sum of the recorded values
+   */
+  public long sum() {
+    return sum;
+  }
+
+  /**
+   * Returns the lowest recorded value.
+   *
+   * @return the lowest recorded value or {@code 0} if no values have been recorded
+   */
+  public long min() {
+    return min;
+  }
+
+  /**
+   * Returns the highest recorded value.
+   *
+   * @return the highest recorded value or {@code 0} if no values have been recorded
+   */
+  public long max() {
+    return max;
+  }
+
+  /**
+   * Returns the mean of the recorded values.
+   *
+   * @return the mean of the recorded values or {@code 0} if no values have been recorded
+   */
+  public double mean() {
+    return count > 0 ? (double) sum / count : 0;
+  }
+
+  /**
+   * Returns the value at the given percentile.
+   *
+   * @param percentile the percentile between {@code 0} and {@code 100}
+   * @return the highest value equivalent to the value at the given percentile
+   */
+  public long percentile(double percentile) {
+    checkArgument(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+    long target = Math.max((long) Math.ceil(percentile / 100 * count), 1);
+    long total = 0;
+    for (int i = 0; i < buckets.length; i++) {
+      total += buckets[i];
+      if (total >= target) {
+        return Math.max(Math.min(Histogram.highestValue(i), max), min);
+      }
+    }
+    return max;
+  }
+
+  @Override
+  public String toString() {
+    return toStringHelper(this)
+        .add("count", count)
+        .add("min", min)
+        .add("mean", mean())
+        .add("p50", percentile(50))
+        .add("p99", percentile(99))
+        .add("max", max)
+        .toString();
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log.metrics;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Metric identifier.
+ * <p>
+ * A metric is identified by its name along with a set of tags, e.g. the server or follower to which the metric
+ * applies.
+ */
+public final class MetricId {
+
+  /**
+   * Returns a new metric identifier.
+   *
+   * @param name the metric name
+   * @param tags alternating tag names and values
+   * @return the metric identifier
+   */
+  public static MetricId of(String name, String... tags) {
+    checkNotNull(name, "name cannot be null");
+    checkArgument(tags.length % 2 == 0, "tags must be name/value pairs");
+    SortedMap<String, String> tagMap = new TreeMap<>();
+    for (int i = 0; i < tags.length; i += 2) {
+      tagMap.put(checkNotNull(tags[i]), checkNotNull(tags[i + 1]));
+    }
+    return new MetricId(name, tagMap);
+  }
+
+  private final String name;
+  private final SortedMap<String, String> tags;
+
+  private MetricId(String name, SortedMap<String, String> tags) {
+    this.name = name;
+    this.tags = tags;
+  }
+
+  /**
+   * Returns the metric name.
+   *
+   * @return the metric name
+   */
+  public String name() {
+    return name;
+  }
+
+  /**
+   * Returns the metric tags.
+   *
+   * @return the metric tags sorted by tag name
+   */
+  public Map<String, String> tags() {
+    return tags;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(name, tags);
+  }
+
+  @Override
+  public boolean equals(Object object) {
+    if (object instanceof MetricId) {
+      MetricId that = (MetricId) object;
+      return name.equals(that.name) && tags.equals(that.tags);
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return toStringHelper(this)
+        .add("name", name)
+        .add("tags", tags)
+        .toString();
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log.metrics;
+
+/**
+ * Metrics exporter.
+ * <p>
+ * Exporters are called by {@link MetricsRegistry#export(MetricsExporter)} once for each registered metric, and can be
+ * used to publish metrics to an external monitoring system.
+ */
+public interface MetricsExporter {
+
+  /**
+   * Exports a counter.
+   *
+   * @param id    the counter identifier
+   * @param count the current count
+   */
+  void exportCounter(MetricId id, long count);
+
+  /**
+   * Exports a gauge.
+   *
+   * @param id    the gauge identifier
+   * @param value the current value
+   */
+  void exportGauge(MetricId id, long value);
+
+  /**
+   * Exports a histogram.
+   *
+   * @param id       the histogram identifier
+   * @param snapshot a snapshot of the histogram
+   */
+  void exportHistogram(MetricId id, HistogramSnapshot snapshot);
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Metrics registry.
+ * <p>
+ * Metrics are created when first requested and shared by all callers requesting the same identifier. Metrics should
+ * be looked up once when a component is created and recorded directly thereafter, so recording never touches the
+ * registry.
+ */
+public class MetricsRegistry {
+  private final Map<MetricId, Object> metrics = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the counter with the given identifier, creating it if necessary.
+   *
+   * @param id the counter identifier
+   * @return the counter
+   */
+  public Counter counter(MetricId id) {
+    return get(id, Counter.class, Counter::new);
+  }
+
+  /**
+   * Returns the histogram with the given identifier, creating it if necessary.
+   *
+   * @param id the histogram identifier
+   * @return the histogram
+   */
+  public Histogram histogram(MetricId id) {
+    return get(id, Histogram.class, Histogram::new);
+  }
+
+  /**
+   * Registers a gauge.
+   * <p>
+   * Gauges are read by exporters from arbitrary threads, so the given supplier must be thread-safe. A previously
+   * registered gauge with the same identifier is replaced.
+   *
+   * @param id    the gauge identifier
+   * @param gauge the gauge value supplier
+   */
+  public void gauge(MetricId id, LongSupplier gauge) {
+    checkNotNull(gauge, "gauge cannot be null");
+    metrics.put(checkNotNull(id, "id cannot be null"), gauge);
+  }
+
+  /**
+   * Removes the metric with the given identifier.
+   *
+   * @param id the metric identifier
+   */
+  public void remove(MetricId id) {
+    metrics.remove(id);
+  }
+
+  /**
+   * Exports all registered metrics to the given exporter.
+   *
+   * @param exporter the exporter to which to export metrics
+   */
+  public void export(MetricsExporter exporter) {
+    metrics.forEach((id, metric) -> {
+      if (metric instanceof Counter) {
+        exporter.exportCounter(id, ((Counter) metric).get());
+      } else if (metric instanceof Histogram) {
+        exporter.exportHistogram(id, ((Histogram) metric).snapshot());
+      } else {
+        exporter.exportGauge(id, ((LongSupplier) metric).getAsLong());
+      }
+    });
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T get(MetricId id, Class<T> type, Supplier<T> factory) {
+    Object metric = metrics.computeIfAbsent(checkNotNull(id, "id cannot be null"), i -> factory.get());
+    if (!type.isInstance(metric)) {
+      throw new IllegalArgumentException(id + " is not a " + type.getSimpleName());
+    }
+    return (T) metric;
+  }
+}
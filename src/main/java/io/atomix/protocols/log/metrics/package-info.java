@@ -0,0 +1,42 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Distributed log metrics.
+ * <p>
+ * Servers and clients record metrics to a {@link io.atomix.protocols.log.metrics.MetricsRegistry} which may be
+ * exported to a monitoring system through a {@link io.atomix.protocols.log.metrics.MetricsExporter}. Times are
+ * recorded in nanoseconds. Server metrics are tagged with the {@code server} identifier:
+ * <ul>
+ *   <li>{@code log.append.journal.time} - time to write an append to the leader's journal</li>
+ *   <li>{@code log.append.replication.time} - time from the journal write until the append is committed</li>
+ *   <li>{@code log.backup.batch.size} - entries per backup request, tagged by {@code follower}</li>
+ *   <li>{@code log.backup.rtt} - backup request round trip time, tagged by {@code follower}</li>
+ *   <li>{@code log.replication.lag.entries} - entries not yet acknowledged, tagged by {@code follower}</li>
+ *   <li>{@code log.replication.lag.bytes} - estimated bytes not yet acknowledged, tagged by {@code follower}</li>
+ *   <li>{@code log.consumer.lag} - committed entries not yet sent, tagged by {@code member} and {@code consumer}</li>
+ *   <li>{@code log.journal.size} - journal size in bytes</li>
+ *   <li>{@code log.journal.segments} - journal segment count</li>
+ *   <li>{@code log.compaction.time} - time to compact the journal</li>
+ * </ul>
+ * Client metrics are tagged with the {@code client} identifier:
+ * <ul>
+ *   <li>{@code log.client.append.time} - time from an append until it is acknowledged</li>
+ *   <li>{@code log.client.append.retries} - appends retried after an error or leader change</li>
+ *   <li>{@code log.client.append.failures} - appends failed</li>
+ * </ul>
+ */
+package io.atomix.protocols.log.metrics;
@@ -24,6 +24,10 @@ import io.atomix.storage.journal.JournalCodec;
 
 /**
  * Distributed log codec.
+ * <p>
+ * Entries are written and read as they are. Values compressed when closed segments are rewritten remain compressed in
+ * the journal and in backups to followers, and are decompressed with {@link EntryCompression} only when records are
+ * sent to clients, so neither compression nor decompression runs on the server's write path.
  */
 public class DistributedLogCodec implements JournalCodec<LogEntry> {
   @Override
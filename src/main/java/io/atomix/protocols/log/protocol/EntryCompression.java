@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log.protocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.google.protobuf.ByteString;
+import io.atomix.protocols.log.Compression;
+
+/**
+ * Compression of entry values.
+ * <p>
+ * Each thread reuses its own deflater and inflater, so compressing and decompressing values allocates no native
+ * compression state.
+ */
+public final class EntryCompression {
+  private static final ThreadLocal<Deflater> DEFLATER =
+      ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+  private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+  private EntryCompression() {
+  }
+
+  /**
+   * Compresses the given value.
+   *
+   * @param value the value to compress
+   * @return the compressed value
+   */
+  public static ByteString deflate(ByteString value) {
+    Deflater deflater = DEFLATER.get();
+    deflater.reset();
+    try {
+      ByteString.Output output = ByteString.newOutput(value.size() / 2);
+      try (OutputStream stream = new DeflaterOutputStream(output, deflater)) {
+        value.writeTo(stream);
+      }
+      return output.toByteString();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Decompresses the given value.
+   *
+   * @param value the value to decompress
+   * @return the decompressed value
+   */
+  public static ByteString inflate(ByteString value) {
+    Inflater inflater = INFLATER.get();
+    inflater.reset();
+    try (InputStream stream = new InflaterInputStream(value.newInput(), inflater)) {
+      return ByteString.readFrom(stream);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns the uncompressed form of a value stored with the given compression.
+   *
+   * @param value       the stored value
+   * @param compression the compression with which the value is stored
+   * @return the uncompressed value
+   */
+  public static ByteString decompress(ByteString value, Compression compression) {
+    return compression == Compression.DEFLATE ? inflate(value) : value;
+  }
+}
@@ -34,21 +34,26 @@ public interface LogClientProtocol {
   CompletableFuture<AppendResponse> append(String memberId, AppendRequest request);
 
   /**
-   * Sends a consume request to the given node.
+   * Opens a consume session with the given node.
+   * <p>
+   * Records are sent to the given handler. Control messages sent to the returned handler are delivered to the node in
+   * order after the request opening the session, and completing the returned handler closes the session.
    *
-   * @param memberId the node to which to send the request
-   * @param request  the request to send
+   * @param memberId the node with which to open the session
+   * @param request  the request opening the session
    * @param handler  the stream handler
-   * @return a future to be completed with the response
+   * @return the session's control message handler
    */
-  CompletableFuture<Void> consume(String memberId, ConsumeRequest request, StreamHandler<ConsumeResponse> handler);
+  StreamHandler<ConsumeControl> consume(
+      String memberId, ConsumeRequest request, StreamHandler<ConsumeResponse> handler);
 
   /**
-   * Sends a reset request to the given node.
+   * Sends a fetch request to the given node.
    *
    * @param memberId the node to which to send the request
    * @param request  the request to send
+   * @return a future to be completed with the response
    */
-  void reset(String memberId, ResetRequest request);
+  CompletableFuture<FetchResponse> fetch(String memberId, FetchRequest request);
 
 }
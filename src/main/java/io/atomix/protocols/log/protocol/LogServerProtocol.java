@@ -37,6 +37,15 @@ public interface LogServerProtocol {
    */
   CompletableFuture<BackupResponse> backup(String memberId, BackupRequest request);
 
+  /**
+   * Sends an install request to the given node.
+   *
+   * @param memberId the node to which to send the request
+   * @param request  the request to send
+   * @return a future to be completed with the response
+   */
+  CompletableFuture<InstallResponse> install(String memberId, InstallRequest request);
+
   /**
    * Registers an append request callback.
    *
@@ -62,17 +71,32 @@ public interface LogServerProtocol {
   void unregisterConsumeHandler();
 
   /**
-   * Registers a reset consumer.
+   * Registers a consume session control message consumer.
+   * <p>
+   * Control messages are passed to the consumer in the order in which they were sent, after the consume request that
+   * opened their session. When the session ends, a control message closing the session is passed to the consumer.
    *
    * @param consumer the consumer to register
    * @param executor the consumer executor
    */
-  void registerResetConsumer(Consumer<ResetRequest> consumer, Executor executor);
+  void registerConsumeControlConsumer(Consumer<ConsumeControl> consumer, Executor executor);
 
   /**
-   * Unregisters the reset request handler.
+   * Unregisters the consume session control message consumer.
+   */
+  void unregisterConsumeControlConsumer();
+
+  /**
+   * Registers a fetch request callback.
+   *
+   * @param handler the fetch request handler to register
    */
-  void unregisterResetConsumer();
+  void registerFetchHandler(Function<FetchRequest, CompletableFuture<FetchResponse>> handler);
+
+  /**
+   * Unregisters the fetch request handler.
+   */
+  void unregisterFetchHandler();
 
   /**
    * Registers a backup request callback.
@@ -86,4 +110,16 @@ public interface LogServerProtocol {
    */
   void unregisterBackupHandler();
 
+  /**
+   * Registers an install request callback.
+   *
+   * @param handler the install request handler to register
+   */
+  void registerInstallHandler(Function<InstallRequest, CompletableFuture<InstallResponse>> handler);
+
+  /**
+   * Unregisters the install request handler.
+   */
+  void unregisterInstallHandler();
+
 }
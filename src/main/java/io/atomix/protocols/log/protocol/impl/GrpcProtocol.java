@@ -16,48 +16,180 @@
 package io.atomix.protocols.log.protocol.impl;
 
 import java.net.ConnectException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
+import com.google.protobuf.MessageLite;
+import io.atomix.protocols.log.LogStreamConfig;
 import io.atomix.protocols.log.protocol.AppendRequest;
 import io.atomix.protocols.log.protocol.AppendResponse;
 import io.atomix.protocols.log.protocol.BackupRequest;
 import io.atomix.protocols.log.protocol.BackupResponse;
+import io.atomix.protocols.log.protocol.ConsumeControl;
 import io.atomix.protocols.log.protocol.ConsumeRequest;
 import io.atomix.protocols.log.protocol.ConsumeResponse;
+import io.atomix.protocols.log.protocol.ConsumeSessionRequest;
 import io.atomix.protocols.log.protocol.DistributedLogServiceGrpc;
+import io.atomix.protocols.log.protocol.FetchRequest;
+import io.atomix.protocols.log.protocol.FetchResponse;
+import io.atomix.protocols.log.protocol.InstallRequest;
+import io.atomix.protocols.log.protocol.InstallResponse;
 import io.atomix.protocols.log.protocol.LogClientProtocol;
 import io.atomix.protocols.log.protocol.LogServerProtocol;
-import io.atomix.protocols.log.protocol.ResetRequest;
-import io.atomix.protocols.log.protocol.ResetResponse;
 import io.atomix.server.management.ServiceFactory;
 import io.atomix.server.management.ServiceRegistry;
 import io.atomix.utils.stream.StreamHandler;
+import io.grpc.ClientCall;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 
 /**
  * gRPC based server protocol.
+ * <p>
+ * Backup requests are sent to each follower over a long-lived bidirectional {@code BackupStream} call rather than one
+ * unary call per batch, and appends from each producer are sent to the leader over its own {@code AppendStream} call.
+ * Servers answer each request on a stream in the order in which requests were received, so responses are matched to
+ * requests in order. A new backup stream is opened when the leader's term changes, a new append stream is opened when
+ * the producer's appends are sent to a different member, and either is reopened after the previous stream fails.
+ * Requests outstanding on a failed stream fail with the stream's error, and the failed stream is discarded. Both ends
+ * of a stream respect gRPC flow control: clients buffer requests while the call isn't ready, and servers read the next
+ * request only once the response stream is ready. Appends without a producer ID use the unary {@code Append} call.
+ * <p>
+ * Consumers open a {@code ConsumeSession} call, which carries records to the consumer and the consumer's control
+ * messages to the server in-band, in order after the request that opened the session. Ranges of records are read with
+ * the unary {@code Fetch} call. Closed journal segments are installed on followers far behind the leader with one unary
+ * {@code Install} call per chunk of a segment file.
+ * <p>
+ * When the protocol is constructed with the ID of the local member, appends, fetches and consume sessions addressed to
+ * the local member are passed directly to the local server's handlers without serializing them or opening a call, and
+ * responses and records are passed back to the client on the thread that completes them. Clients hand records to their
+ * own threads before passing them to consumers, so consumers never run on the local server's thread.
+ * <p>
+ * Append, backup and install requests and consume and fetch responses are sent and received with a
+ * {@link PayloadMarshaller} so record payloads and segment chunks are not copied more often than the transport
+ * requires. Backup and append requests and consume responses are compressed as configured for each kind of stream by a
+ * {@link LogStreamConfig}, fetch responses are compressed like consume responses, and install requests like backup
+ * requests.
  */
 public class GrpcProtocol extends DistributedLogServiceGrpc.DistributedLogServiceImplBase implements LogClientProtocol, LogServerProtocol {
   private static final ConnectException CONNECT_EXCEPTION = new ConnectException();
 
+  private static final MethodDescriptor<AppendRequest, AppendResponse> APPEND_METHOD =
+      marshal(DistributedLogServiceGrpc.getAppendMethod());
+  private static final MethodDescriptor<AppendRequest, AppendResponse> APPEND_STREAM_METHOD =
+      marshal(DistributedLogServiceGrpc.getAppendStreamMethod());
+  private static final MethodDescriptor<BackupRequest, BackupResponse> BACKUP_STREAM_METHOD =
+      marshal(DistributedLogServiceGrpc.getBackupStreamMethod());
+  private static final MethodDescriptor<ConsumeSessionRequest, ConsumeResponse> CONSUME_SESSION_METHOD =
+      marshal(DistributedLogServiceGrpc.getConsumeSessionMethod());
+  private static final MethodDescriptor<FetchRequest, FetchResponse> FETCH_METHOD =
+      marshal(DistributedLogServiceGrpc.getFetchMethod());
+  private static final MethodDescriptor<InstallRequest, InstallResponse> INSTALL_METHOD =
+      marshal(DistributedLogServiceGrpc.getInstallMethod());
+
   static {
     CONNECT_EXCEPTION.setStackTrace(new StackTraceElement[0]);
   }
 
+  /**
+   * Returns a copy of the given method which marshals messages carrying record payloads with a
+   * {@link PayloadMarshaller}.
+   */
+  private static <T, R> MethodDescriptor<T, R> marshal(MethodDescriptor<T, R> method) {
+    return method.toBuilder(marshaller(method.getRequestMarshaller()), marshaller(method.getResponseMarshaller()))
+        .build();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> MethodDescriptor.Marshaller<T> marshaller(MethodDescriptor.Marshaller<T> marshaller) {
+    if (marshaller instanceof MethodDescriptor.PrototypeMarshaller) {
+      Object prototype = ((MethodDescriptor.PrototypeMarshaller<T>) marshaller).getMessagePrototype();
+      if (prototype instanceof AppendRequest) {
+        return (MethodDescriptor.Marshaller<T>) new PayloadMarshaller<>((AppendRequest) prototype);
+      } else if (prototype instanceof BackupRequest) {
+        return (MethodDescriptor.Marshaller<T>) new PayloadMarshaller<>((BackupRequest) prototype);
+      } else if (prototype instanceof ConsumeResponse) {
+        return (MethodDescriptor.Marshaller<T>) new PayloadMarshaller<>((ConsumeResponse) prototype);
+      } else if (prototype instanceof FetchResponse) {
+        return (MethodDescriptor.Marshaller<T>) new PayloadMarshaller<>((FetchResponse) prototype);
+      } else if (prototype instanceof InstallRequest) {
+        return (MethodDescriptor.Marshaller<T>) new PayloadMarshaller<>((InstallRequest) prototype);
+      }
+    }
+    return marshaller;
+  }
+
   private final ServiceFactory<DistributedLogServiceGrpc.DistributedLogServiceStub> factory;
+  private final String localMemberId;
+  private final StreamCompression backupCompression;
+  private final StreamCompression appendCompression;
+  private final StreamCompression consumeCompression;
   private Function<AppendRequest, CompletableFuture<AppendResponse>> appendHandler;
   private BiFunction<ConsumeRequest, StreamHandler<ConsumeResponse>, CompletableFuture<Void>> consumeHandler;
-  private Consumer<ResetRequest> resetHandler;
+  private Consumer<ConsumeControl> controlConsumer;
+  private Function<FetchRequest, CompletableFuture<FetchResponse>> fetchHandler;
+  private final Map<String, RequestStream<AppendRequest, AppendResponse>> appendStreams = new ConcurrentHashMap<>();
+  private final Map<String, RequestStream<BackupRequest, BackupResponse>> backupStreams = new ConcurrentHashMap<>();
   private Function<BackupRequest, CompletableFuture<BackupResponse>> backupHandler;
+  private Function<InstallRequest, CompletableFuture<InstallResponse>> installHandler;
 
   public GrpcProtocol(ServiceFactory<DistributedLogServiceGrpc.DistributedLogServiceStub> factory, ServiceRegistry registry) {
+    this(factory, registry, null, LogStreamConfig.getDefaultInstance());
+  }
+
+  public GrpcProtocol(
+      ServiceFactory<DistributedLogServiceGrpc.DistributedLogServiceStub> factory,
+      ServiceRegistry registry,
+      String localMemberId,
+      LogStreamConfig streamConfig) {
     this.factory = factory;
-    registry.register(this);
+    this.localMemberId = localMemberId;
+    this.backupCompression = StreamCompression.of(streamConfig.getBackup());
+    this.appendCompression = StreamCompression.of(streamConfig.getAppend());
+    this.consumeCompression = StreamCompression.of(streamConfig.getConsume());
+    registry.register(this::bindMarshalledService);
+  }
+
+  /**
+   * Returns the service definition with the payload marshallers used by clients.
+   */
+  private ServerServiceDefinition bindMarshalledService() {
+    ServerServiceDefinition definition = bindService();
+    ServiceDescriptor.Builder service = ServiceDescriptor.newBuilder(definition.getServiceDescriptor().getName())
+        .setSchemaDescriptor(definition.getServiceDescriptor().getSchemaDescriptor());
+    Map<MethodDescriptor<?, ?>, ServerMethodDefinition<?, ?>> methods = new LinkedHashMap<>();
+    for (ServerMethodDefinition<?, ?> method : definition.getMethods()) {
+      MethodDescriptor<?, ?> descriptor = marshal(method.getMethodDescriptor());
+      service.addMethod(descriptor);
+      methods.put(descriptor, method);
+    }
+    ServerServiceDefinition.Builder builder = ServerServiceDefinition.builder(service.build());
+    methods.forEach((descriptor, method) -> addMethod(builder, descriptor, method));
+    return builder.build();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T, R> void addMethod(
+      ServerServiceDefinition.Builder builder, MethodDescriptor<T, R> descriptor, ServerMethodDefinition<?, ?> method) {
+    builder.addMethod(descriptor, ((ServerMethodDefinition<T, R>) method).getServerCallHandler());
   }
 
   @Override
@@ -70,17 +202,118 @@ public class GrpcProtocol extends DistributedLogServiceGrpc.DistributedLogServic
     handle(request, consumeHandler, responseObserver);
   }
 
+  @Override
+  public void fetch(FetchRequest request, StreamObserver<FetchResponse> responseObserver) {
+    Function<FetchRequest, CompletableFuture<FetchResponse>> handler = fetchHandler;
+    if (handler == null) {
+      responseObserver.onError(CONNECT_EXCEPTION);
+      return;
+    }
+    consumeCompression.apply(responseObserver);
+    handler.apply(request).whenComplete((response, error) -> {
+      if (error == null) {
+        consumeCompression.next(responseObserver, response);
+        responseObserver.onCompleted();
+      } else {
+        responseObserver.onError(error);
+      }
+    });
+  }
+
   @Override
   public void backup(BackupRequest request, StreamObserver<BackupResponse> responseObserver) {
     handle(request, backupHandler, responseObserver);
   }
 
   @Override
-  public void reset(ResetRequest request, StreamObserver<ResetResponse> responseObserver) {
-    handle(request, r -> {
-      resetHandler.accept(r);
-      return CompletableFuture.completedFuture(ResetResponse.newBuilder().build());
-    }, responseObserver);
+  public void install(InstallRequest request, StreamObserver<InstallResponse> responseObserver) {
+    handle(request, installHandler, responseObserver);
+  }
+
+  @Override
+  public StreamObserver<AppendRequest> appendStream(StreamObserver<AppendResponse> responseObserver) {
+    return handle(() -> appendHandler, responseObserver);
+  }
+
+  @Override
+  public StreamObserver<BackupRequest> backupStream(StreamObserver<BackupResponse> responseObserver) {
+    return handle(() -> backupHandler, responseObserver);
+  }
+
+  @Override
+  public StreamObserver<ConsumeSessionRequest> consumeSession(StreamObserver<ConsumeResponse> responseObserver) {
+    consumeCompression.apply(responseObserver);
+    // The consumer may close the session while records are still being sent, so ignore records sent after it's closed.
+    StreamObserver<ConsumeResponse> records = new StreamObserver<ConsumeResponse>() {
+      private boolean closed;
+
+      @Override
+      public synchronized void onNext(ConsumeResponse response) {
+        if (!closed) {
+          consumeCompression.next(responseObserver, response);
+        }
+      }
+
+      @Override
+      public synchronized void onError(Throwable t) {
+        if (!closed) {
+          closed = true;
+          responseObserver.onError(t);
+        }
+      }
+
+      @Override
+      public synchronized void onCompleted() {
+        if (!closed) {
+          closed = true;
+          responseObserver.onCompleted();
+        }
+      }
+    };
+    // When the consumer ends the session, the server is told to close it so the session's sender is discarded.
+    return new StreamObserver<ConsumeSessionRequest>() {
+      private volatile ConsumeRequest consume;
+
+      @Override
+      public void onNext(ConsumeSessionRequest request) {
+        if (request.hasConsume()) {
+          consume = request.getConsume();
+          handle(request.getConsume(), consumeHandler, records);
+        } else if (request.hasControl()) {
+          control(request.getControl());
+        }
+      }
+
+      private void control(ConsumeControl control) {
+        Consumer<ConsumeControl> consumer = controlConsumer;
+        if (consumer != null) {
+          consumer.accept(control);
+        }
+      }
+
+      private void close() {
+        records.onCompleted();
+        ConsumeRequest consume = this.consume;
+        if (consume != null) {
+          control(ConsumeControl.newBuilder()
+              .setMemberId(consume.getMemberId())
+              .setConsumerId(consume.getConsumerId())
+              .setSessionId(consume.getSessionId())
+              .setClose(true)
+              .build());
+        }
+      }
+
+      @Override
+      public void onError(Throwable t) {
+        close();
+      }
+
+      @Override
+      public void onCompleted() {
+        close();
+      }
+    };
   }
 
   private <T, R> void handle(
@@ -131,24 +364,131 @@ public class GrpcProtocol extends DistributedLogServiceGrpc.DistributedLogServic
     }
   }
 
+  private <T, R> StreamObserver<T> handle(
+      Supplier<Function<T, CompletableFuture<R>>> handler,
+      StreamObserver<R> responseObserver) {
+    return new HandlerStream<>(handler, responseObserver);
+  }
+
   @Override
   public CompletableFuture<AppendResponse> append(String memberId, AppendRequest request) {
-    return execute(memberId, (log, stream) -> log.append(request, stream));
+    Function<AppendRequest, CompletableFuture<AppendResponse>> handler = appendHandler;
+    if (handler != null && isLocal(memberId)) {
+      if (!request.getProducerId().isEmpty()) {
+        RequestStream<AppendRequest, AppendResponse> stream = appendStreams.remove(request.getProducerId());
+        if (stream != null) {
+          stream.close();
+        }
+      }
+      return handler.apply(request);
+    }
+    if (request.getProducerId().isEmpty()) {
+      return execute(memberId, (log, stream) -> ClientCalls.asyncUnaryCall(
+          log.getChannel().newCall(APPEND_METHOD, appendCompression.apply(log.getCallOptions(), request)),
+          request,
+          stream));
+    }
+    CompletableFuture<AppendResponse> future = new CompletableFuture<>();
+    RequestStream<AppendRequest, AppendResponse> appendStream = appendStreams.compute(request.getProducerId(),
+        (id, stream) -> {
+          if (stream != null && stream.isOpen() && stream.memberId.equals(memberId)) {
+            return stream;
+          }
+          if (stream != null) {
+            stream.close();
+          }
+          DistributedLogServiceGrpc.DistributedLogServiceStub log = factory.getService(memberId);
+          return new RequestStream<>(memberId, 0, appendCompression, responses ->
+              ClientCalls.asyncBidiStreamingCall(call(log, APPEND_STREAM_METHOD, appendCompression), responses),
+              failed -> appendStreams.remove(id, failed));
+        });
+    appendStream.start();
+    appendStream.send(request, future);
+    return future;
   }
 
   @Override
-  public CompletableFuture<Void> consume(String memberId, ConsumeRequest request, StreamHandler<ConsumeResponse> handler) {
-    return execute(memberId, handler, (log, stream) -> log.consume(request, stream));
+  public StreamHandler<ConsumeControl> consume(
+      String memberId, ConsumeRequest request, StreamHandler<ConsumeResponse> handler) {
+    StreamObserver<ConsumeSessionRequest> session = consumeHandler != null && isLocal(memberId)
+        ? consumeSession(observer(handler))
+        : execute(memberId, handler,
+            (log, stream) -> ClientCalls.asyncBidiStreamingCall(
+                call(log, CONSUME_SESSION_METHOD, StreamCompression.NONE), stream));
+    session.onNext(ConsumeSessionRequest.newBuilder().setConsume(request).build());
+    return new StreamHandler<ConsumeControl>() {
+      private boolean closed;
+
+      @Override
+      public synchronized void next(ConsumeControl control) {
+        if (!closed) {
+          session.onNext(ConsumeSessionRequest.newBuilder().setControl(control).build());
+        }
+      }
+
+      @Override
+      public synchronized void complete() {
+        if (!closed) {
+          closed = true;
+          session.onCompleted();
+        }
+      }
+
+      @Override
+      public synchronized void error(Throwable error) {
+        if (!closed) {
+          closed = true;
+          session.onError(error);
+        }
+      }
+    };
   }
 
   @Override
-  public void reset(String memberId, ResetRequest request) {
-    this.<ResetResponse>execute(memberId, (log, stream) -> log.reset(request, stream));
+  public CompletableFuture<FetchResponse> fetch(String memberId, FetchRequest request) {
+    Function<FetchRequest, CompletableFuture<FetchResponse>> handler = fetchHandler;
+    if (handler != null && isLocal(memberId)) {
+      return handler.apply(request);
+    }
+    return execute(memberId, (log, stream) -> ClientCalls.asyncUnaryCall(
+        log.getChannel().newCall(FETCH_METHOD, log.getCallOptions()),
+        request,
+        stream));
   }
 
   @Override
   public CompletableFuture<BackupResponse> backup(String memberId, BackupRequest request) {
-    return execute(memberId, (log, stream) -> log.backup(request, stream));
+    CompletableFuture<BackupResponse> future = new CompletableFuture<>();
+    RequestStream<BackupRequest, BackupResponse> backupStream = backupStreams.compute(memberId, (id, stream) -> {
+      if (stream != null && stream.isOpen() && stream.term >= request.getTerm()) {
+        return stream;
+      }
+      if (stream != null) {
+        stream.close();
+      }
+      DistributedLogServiceGrpc.DistributedLogServiceStub log = factory.getService(id);
+      return new RequestStream<>(id, request.getTerm(), backupCompression, responses ->
+          ClientCalls.asyncBidiStreamingCall(call(log, BACKUP_STREAM_METHOD, backupCompression), responses),
+          failed -> backupStreams.remove(id, failed));
+    });
+    backupStream.start();
+    backupStream.send(request, future);
+    return future;
+  }
+
+  @Override
+  public CompletableFuture<InstallResponse> install(String memberId, InstallRequest request) {
+    return execute(memberId, (log, stream) -> ClientCalls.asyncUnaryCall(
+        log.getChannel().newCall(INSTALL_METHOD, backupCompression.apply(log.getCallOptions(), request)),
+        request,
+        stream));
+  }
+
+  /**
+   * Returns a boolean indicating whether the given member is the local member.
+   */
+  private boolean isLocal(String memberId) {
+    return localMemberId != null && localMemberId.equals(memberId);
   }
 
   @Override
@@ -172,13 +512,23 @@ public class GrpcProtocol extends DistributedLogServiceGrpc.DistributedLogServic
   }
 
   @Override
-  public void registerResetConsumer(Consumer<ResetRequest> consumer, Executor executor) {
-    this.resetHandler = request -> executor.execute(() -> consumer.accept(request));
+  public void registerConsumeControlConsumer(Consumer<ConsumeControl> consumer, Executor executor) {
+    this.controlConsumer = control -> executor.execute(() -> consumer.accept(control));
+  }
+
+  @Override
+  public void unregisterConsumeControlConsumer() {
+    this.controlConsumer = null;
+  }
+
+  @Override
+  public void registerFetchHandler(Function<FetchRequest, CompletableFuture<FetchResponse>> handler) {
+    this.fetchHandler = handler;
   }
 
   @Override
-  public void unregisterResetConsumer() {
-    this.resetHandler = null;
+  public void unregisterFetchHandler() {
+    this.fetchHandler = null;
   }
 
   @Override
@@ -191,6 +541,26 @@ public class GrpcProtocol extends DistributedLogServiceGrpc.DistributedLogServic
     this.backupHandler = null;
   }
 
+  @Override
+  public void registerInstallHandler(Function<InstallRequest, CompletableFuture<InstallResponse>> handler) {
+    this.installHandler = handler;
+  }
+
+  @Override
+  public void unregisterInstallHandler() {
+    this.installHandler = null;
+  }
+
+  /**
+   * Starts a streaming call to the given method on the stub's channel with the stub's call options.
+   */
+  private static <T, R> ClientCall<T, R> call(
+      DistributedLogServiceGrpc.DistributedLogServiceStub stub,
+      MethodDescriptor<T, R> method,
+      StreamCompression compression) {
+    return stub.getChannel().newCall(method, compression.apply(stub.getCallOptions()));
+  }
+
   protected <T> CompletableFuture<T> execute(String memberId, BiConsumer<DistributedLogServiceGrpc.DistributedLogServiceStub, StreamObserver<T>> callback) {
     CompletableFuture<T> future = new CompletableFuture<>();
     callback.accept(factory.getService(memberId), new StreamObserver<T>() {
@@ -212,8 +582,15 @@ public class GrpcProtocol extends DistributedLogServiceGrpc.DistributedLogServic
     return future;
   }
 
-  protected <T> CompletableFuture<Void> execute(String memberId, StreamHandler<T> handler, BiConsumer<DistributedLogServiceGrpc.DistributedLogServiceStub, StreamObserver<T>> callback) {
-    callback.accept(factory.getService(memberId), new StreamObserver<T>() {
+  protected <T, U> StreamObserver<U> execute(
+      String memberId,
+      StreamHandler<T> handler,
+      BiFunction<DistributedLogServiceGrpc.DistributedLogServiceStub, StreamObserver<T>, StreamObserver<U>> callback) {
+    return callback.apply(factory.getService(memberId), observer(handler));
+  }
+
+  private static <T> StreamObserver<T> observer(StreamHandler<T> handler) {
+    return new StreamObserver<T>() {
       @Override
       public void onNext(T value) {
         handler.next(value);
@@ -228,7 +605,283 @@ public class GrpcProtocol extends DistributedLogServiceGrpc.DistributedLogServic
       public void onCompleted() {
         handler.complete();
       }
-    });
-    return CompletableFuture.completedFuture(null);
+    };
+  }
+
+  /**
+   * Server side of a request stream.
+   * <p>
+   * Each request is read from the stream only once the response stream is ready, so a client that doesn't keep up with
+   * responses stops the server from reading further requests rather than responses being buffered without bound.
+   * Responses completed after the client cancels the stream or after the stream fails are discarded.
+   */
+  private static final class HandlerStream<T, R> implements StreamObserver<T> {
+    private final Supplier<Function<T, CompletableFuture<R>>> handler;
+    private final StreamObserver<R> responseObserver;
+    private final ServerCallStreamObserver<R> call;
+    private CompletableFuture<Void> responses = CompletableFuture.completedFuture(null);
+    private boolean waiting;
+    private boolean closed;
+
+    HandlerStream(Supplier<Function<T, CompletableFuture<R>>> handler, StreamObserver<R> responseObserver) {
+      this.handler = handler;
+      this.responseObserver = responseObserver;
+      if (responseObserver instanceof ServerCallStreamObserver) {
+        call = (ServerCallStreamObserver<R>) responseObserver;
+        call.disableAutoInboundFlowControl();
+        call.setOnReadyHandler(this::ready);
+        call.setOnCancelHandler(this::cancel);
+        call.request(1);
+      } else {
+        call = null;
+      }
+    }
+
+    @Override
+    public synchronized void onNext(T request) {
+      if (closed) {
+        return;
+      }
+
+      Function<T, CompletableFuture<R>> function = handler.get();
+      CompletableFuture<R> future;
+      if (function != null) {
+        future = function.apply(request);
+      } else {
+        future = new CompletableFuture<>();
+        future.completeExceptionally(CONNECT_EXCEPTION);
+      }
+
+      // Chain responses so they're sent in request order even if the handler completes them out of order.
+      responses = responses.thenCompose(v -> future).thenAccept(this::respond);
+      responses.whenComplete((result, error) -> {
+        if (error != null) {
+          fail(error);
+        }
+      });
+
+      if (call != null) {
+        if (call.isReady()) {
+          call.request(1);
+        } else {
+          waiting = true;
+        }
+      }
+    }
+
+    /**
+     * Reads the next request once the response stream becomes ready.
+     */
+    private synchronized void ready() {
+      if (waiting && !closed) {
+        waiting = false;
+        call.request(1);
+      }
+    }
+
+    private synchronized void respond(R response) {
+      if (!closed) {
+        responseObserver.onNext(response);
+      }
+    }
+
+    private synchronized void fail(Throwable error) {
+      if (!closed) {
+        closed = true;
+        responseObserver.onError(error);
+      }
+    }
+
+    private synchronized void cancel() {
+      closed = true;
+    }
+
+    @Override
+    public synchronized void onError(Throwable t) {
+      closed = true;
+    }
+
+    @Override
+    public synchronized void onCompleted() {
+      responses.whenComplete((result, error) -> {
+        if (error == null) {
+          complete();
+        }
+      });
+    }
+
+    private synchronized void complete() {
+      if (!closed) {
+        closed = true;
+        responseObserver.onCompleted();
+      }
+    }
+  }
+
+  /**
+   * Client side of a request stream to a single member.
+   * <p>
+   * Requests are written to the call only while the call is ready, and are buffered in order until it becomes ready
+   * again. When the stream is closed, buffered requests fail rather than being written. When the stream fails, its
+   * outstanding and buffered requests fail with the stream's error and the stream's failure listener is called so the
+   * stream can be discarded.
+   */
+  private static final class RequestStream<T extends MessageLite, R> implements ClientResponseObserver<T, R> {
+    private final String memberId;
+    private final long term;
+    private final StreamCompression compression;
+    private final Function<StreamObserver<R>, StreamObserver<T>> factory;
+    private final Consumer<RequestStream<T, R>> failureListener;
+    private final Deque<CompletableFuture<R>> pending = new ArrayDeque<>();
+    private final Deque<T> buffered = new ArrayDeque<>();
+    private StreamObserver<T> requests;
+    private ClientCallStreamObserver<T> call;
+    private boolean open = true;
+    private boolean completed;
+
+    RequestStream(
+        String memberId,
+        long term,
+        StreamCompression compression,
+        Function<StreamObserver<R>, StreamObserver<T>> factory,
+        Consumer<RequestStream<T, R>> failureListener) {
+      this.memberId = memberId;
+      this.term = term;
+      this.compression = compression;
+      this.factory = factory;
+      this.failureListener = failureListener;
+    }
+
+    /**
+     * Starts the call if it has not already been started.
+     * <p>
+     * Streams are created inside the stream map's compute functions but started outside them, so a call failing as
+     * it's started can remove the stream from the map.
+     */
+    synchronized void start() {
+      if (open && requests == null) {
+        requests = factory.apply(this);
+      }
+    }
+
+    @Override
+    public void beforeStart(ClientCallStreamObserver<T> call) {
+      this.call = call;
+      call.setOnReadyHandler(this::drain);
+    }
+
+    /**
+     * Returns a boolean indicating whether requests can be sent on the stream.
+     *
+     * @return indicates whether the stream is open
+     */
+    synchronized boolean isOpen() {
+      return open;
+    }
+
+    /**
+     * Sends a request on the stream.
+     *
+     * @param request the request to send
+     * @param future  the future to complete with the response
+     */
+    void send(T request, CompletableFuture<R> future) {
+      synchronized (this) {
+        if (open && requests != null) {
+          pending.add(future);
+          if (buffered.isEmpty() && isReady()) {
+            compression.next(requests, request);
+          } else {
+            buffered.add(request);
+          }
+          return;
+        }
+      }
+      future.completeExceptionally(CONNECT_EXCEPTION);
+    }
+
+    /**
+     * Returns a boolean indicating whether the call can accept a request without buffering it.
+     */
+    private boolean isReady() {
+      return call == null || call.isReady();
+    }
+
+    /**
+     * Writes buffered requests while the call is ready, half-closing the call once all are written if the stream has
+     * been closed.
+     */
+    private synchronized void drain() {
+      if (completed) {
+        return;
+      }
+      while (!buffered.isEmpty() && isReady()) {
+        compression.next(requests, buffered.remove());
+      }
+      if (!open && buffered.isEmpty()) {
+        completed = true;
+        requests.onCompleted();
+      }
+    }
+
+    /**
+     * Half-closes the stream, allowing outstanding requests to complete.
+     * <p>
+     * Requests still buffered are never written, and fail so they can be sent again on the stream replacing this one.
+     */
+    void close() {
+      Deque<CompletableFuture<R>> unsent = new ArrayDeque<>();
+      synchronized (this) {
+        if (!open) {
+          return;
+        }
+        open = false;
+        while (!buffered.isEmpty()) {
+          buffered.removeLast();
+          unsent.addFirst(pending.removeLast());
+        }
+        if (requests != null) {
+          drain();
+        }
+      }
+      unsent.forEach(future -> future.completeExceptionally(CONNECT_EXCEPTION));
+    }
+
+    @Override
+    public void onNext(R response) {
+      CompletableFuture<R> future;
+      synchronized (this) {
+        future = pending.poll();
+      }
+      if (future != null) {
+        future.complete(response);
+      }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      fail(t);
+    }
+
+    @Override
+    public void onCompleted() {
+      fail(CONNECT_EXCEPTION);
+    }
+
+    /**
+     * Closes the stream and fails outstanding requests.
+     */
+    private void fail(Throwable error) {
+      Queue<CompletableFuture<R>> failed;
+      synchronized (this) {
+        open = false;
+        completed = true;
+        buffered.clear();
+        failed = new ArrayDeque<>(pending);
+        pending.clear();
+      }
+      failureListener.accept(this);
+      failed.forEach(future -> future.completeExceptionally(error));
+    }
   }
 }
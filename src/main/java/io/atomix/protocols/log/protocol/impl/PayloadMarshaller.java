@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log.protocol.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * gRPC marshaller for messages carrying record payloads.
+ * <p>
+ * Messages are written straight to the transport's output stream, so large payloads are copied once from their
+ * {@code ByteString} into the transport's buffers. Received messages are read into a single array sized to the
+ * message and parsed with aliasing enabled, so payloads wrap that array rather than being copied out of it. Messages
+ * passed between a client and server in the same process are never serialized.
+ */
+final class PayloadMarshaller<T extends MessageLite> implements MethodDescriptor.PrototypeMarshaller<T> {
+  private static final int MAX_BUFFER_SIZE = 4096;
+
+  private final T prototype;
+  private final Parser<T> parser;
+
+  @SuppressWarnings("unchecked")
+  PayloadMarshaller(T prototype) {
+    this.prototype = prototype;
+    this.parser = (Parser<T>) prototype.getParserForType();
+  }
+
+  @Override
+  public T getMessagePrototype() {
+    return prototype;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Class<T> getMessageClass() {
+    return (Class<T>) prototype.getClass();
+  }
+
+  @Override
+  public InputStream stream(T message) {
+    return new PayloadStream(message);
+  }
+
+  @Override
+  public T parse(InputStream stream) {
+    if (stream instanceof PayloadMarshaller.PayloadStream) {
+      T message = ((PayloadStream) stream).message;
+      if (message != null && message.getParserForType() == parser) {
+        return message;
+      }
+    }
+
+    try {
+      byte[] bytes;
+      if (stream instanceof KnownLength) {
+        bytes = new byte[stream.available()];
+        ByteStreams.readFully(stream, bytes);
+      } else {
+        bytes = ByteStreams.toByteArray(stream);
+      }
+      CodedInputStream input = CodedInputStream.newInstance(bytes);
+      input.enableAliasing(true);
+      input.setSizeLimit(Integer.MAX_VALUE);
+      return parser.parseFrom(input);
+    } catch (IOException e) {
+      throw Status.INTERNAL.withDescription("Invalid protobuf byte sequence").withCause(e).asRuntimeException();
+    }
+  }
+
+  /**
+   * Message stream which the transport drains directly into its output stream.
+   */
+  private final class PayloadStream extends InputStream implements Drainable, KnownLength {
+    private T message;
+    private ByteArrayInputStream bytes;
+
+    PayloadStream(T message) {
+      this.message = message;
+    }
+
+    @Override
+    public int drainTo(OutputStream target) throws IOException {
+      if (message != null) {
+        int size = message.getSerializedSize();
+        CodedOutputStream output = CodedOutputStream.newInstance(target, Math.min(size, MAX_BUFFER_SIZE));
+        message.writeTo(output);
+        output.flush();
+        message = null;
+        return size;
+      } else if (bytes != null) {
+        return (int) ByteStreams.copy(bytes, target);
+      }
+      return 0;
+    }
+
+    @Override
+    public int read() {
+      return bytes().read();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+      return bytes().read(buffer, offset, length);
+    }
+
+    @Override
+    public int available() {
+      if (message != null) {
+        return message.getSerializedSize();
+      } else if (bytes != null) {
+        return bytes.available();
+      }
+      return 0;
+    }
+
+    /**
+     * Serializes the message for transports that read the stream rather than draining it.
+     */
+    private ByteArrayInputStream bytes() {
+      if (message != null) {
+        bytes = new ByteArrayInputStream(message.toByteArray());
+        message = null;
+      } else if (bytes == null) {
+        bytes = new ByteArrayInputStream(new byte[0]);
+      }
+      return bytes;
+    }
+  }
+}
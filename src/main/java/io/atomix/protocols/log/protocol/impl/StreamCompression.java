@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log.protocol.impl;
+
+import com.google.protobuf.MessageLite;
+import io.atomix.protocols.log.Compression;
+import io.atomix.protocols.log.StreamCompressionConfig;
+import io.grpc.CallOptions;
+import io.grpc.stub.CallStreamObserver;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Per-message compression of the messages sent on a gRPC stream.
+ * <p>
+ * Each message is a whole batch or record, and only messages at least {@code threshold} bytes in size are compressed.
+ * {@link Compression#DEFLATE} is sent with gRPC's {@code gzip} codec, which all gRPC peers accept.
+ */
+final class StreamCompression {
+  static final StreamCompression NONE = new StreamCompression(null, 0);
+
+  private static final String CODEC = "gzip";
+  private static final int DEFAULT_THRESHOLD = 1024;
+
+  /**
+   * Returns the compression for the given configuration.
+   *
+   * @param config the stream compression configuration
+   * @return the stream compression
+   */
+  static StreamCompression of(StreamCompressionConfig config) {
+    if (config.getCompression() == Compression.DEFLATE) {
+      return new StreamCompression(CODEC, config.getThreshold() > 0 ? config.getThreshold() : DEFAULT_THRESHOLD);
+    }
+    return NONE;
+  }
+
+  private final String codec;
+  private final int threshold;
+
+  private StreamCompression(String codec, int threshold) {
+    this.codec = codec;
+    this.threshold = threshold;
+  }
+
+  /**
+   * Returns call options enabling compression for a call, or the given options if compression is disabled.
+   *
+   * @param options the call options
+   * @return the call options for the stream
+   */
+  CallOptions apply(CallOptions options) {
+    return codec != null ? options.withCompression(codec) : options;
+  }
+
+  /**
+   * Returns call options for a unary call sending the given message.
+   *
+   * @param options the call options
+   * @param message the message to send
+   * @return the call options for the message
+   */
+  CallOptions apply(CallOptions options, MessageLite message) {
+    return codec != null && message.getSerializedSize() >= threshold ? options.withCompression(codec) : options;
+  }
+
+  /**
+   * Enables compression of the responses sent by a server.
+   *
+   * @param observer the server's response observer
+   */
+  void apply(StreamObserver<?> observer) {
+    if (codec != null && observer instanceof ServerCallStreamObserver) {
+      ((ServerCallStreamObserver<?>) observer).setCompression(codec);
+    }
+  }
+
+  /**
+   * Sends a message on a stream, compressing it if it is large enough.
+   *
+   * @param observer the stream to which to send the message
+   * @param message  the message to send
+   * @param <T>      the message type
+   */
+  <T extends MessageLite> void next(StreamObserver<T> observer, T message) {
+    if (codec != null && observer instanceof CallStreamObserver) {
+      ((CallStreamObserver<T>) observer).setMessageCompression(message.getSerializedSize() >= threshold);
+    }
+    observer.onNext(message);
+  }
+}
@@ -0,0 +1,585 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log.roles;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import io.atomix.protocols.log.AckMode;
+import io.atomix.protocols.log.LogEntry;
+import io.atomix.protocols.log.impl.DistributedLogServerContext;
+import io.atomix.protocols.log.metrics.Counter;
+import io.atomix.protocols.log.metrics.Histogram;
+import io.atomix.protocols.log.metrics.MetricId;
+import io.atomix.protocols.log.protocol.BackupOperation;
+import io.atomix.protocols.log.protocol.BackupRequest;
+import io.atomix.protocols.log.protocol.BackupResponse;
+import io.atomix.protocols.log.protocol.InstallRequest;
+import io.atomix.protocols.log.protocol.ResponseStatus;
+import io.atomix.storage.journal.Indexed;
+import io.atomix.storage.journal.JournalReader;
+import io.atomix.storage.journal.JournalSegment;
+import org.slf4j.Logger;
+
+/**
+ * Base class for replicators.
+ * <p>
+ * Entries are read from the journal once and shared by the batches sent to all followers. When the replicator is
+ * started, a probe is sent to each follower to find where the follower's journal diverges from the leader's.
+ * Followers reject batches that don't follow their journals with their last index and the bounds of the conflicting
+ * term, allowing the leader to skip back a term at a time until the journals match, after which only the missing
+ * entries are sent.
+ * <p>
+ * Appends may also wait for their entries to be backed up to a number of followers regardless of the replication
+ * strategy. Their futures are completed as followers acknowledge entries, and batches are sent to followers without
+ * waiting for a full batch while any are pending.
+ * <p>
+ * Each acknowledgement carries the follower's {@link AckMode} and the last index flushed to the follower's disk, from
+ * which the leader tracks the entries received, written and flushed by each follower separately. Entries are counted
+ * as replicated to a follower once they reach the guarantee of the leader's own ack mode, and as backed up once known
+ * to be written to the follower's journal. A follower acknowledging batches on receipt has written each batch by the
+ * time it accepts the next one, so an empty batch is sent to a follower when entries it acknowledged are waited on
+ * before they reach the required guarantee. If such a batch brings no progress and no entries are ready to send, the
+ * next one is sent after a delay.
+ * <p>
+ * A follower more than the install threshold behind the leader, or missing entries the leader has compacted, is sent
+ * the leader's closed segment files starting with the segment containing the next entry to send. The segments replace
+ * the follower's journal, after which the follower is known to match the leader up to the end of the last installed
+ * segment and batches are sent from there as usual.
+ */
+abstract class AbstractReplicator implements Replicator {
+  protected static final int MAX_BATCH_SIZE = 100;
+  private static final int MAX_CACHED_OPERATIONS = MAX_BATCH_SIZE * 10;
+  private static final Duration RETRY_DELAY = Duration.ofMillis(100);
+
+  protected final DistributedLogServerContext context;
+  protected final Logger log;
+  private final Map<String, BackupQueue> queues = new HashMap<>();
+  private final Map<Integer, NavigableMap<Long, CompletableFuture<Void>>> backupFutures = new HashMap<>();
+  private final NavigableMap<Long, BackupOperation> operations = new TreeMap<>();
+  private JournalReader<LogEntry> reader;
+
+  AbstractReplicator(DistributedLogServerContext context, Logger log) {
+    this.context = context;
+    this.log = log;
+    this.reader = context.journal().openReader(context.writer().getLastIndex() + 1);
+  }
+
+  @Override
+  public void start() {
+    backup();
+  }
+
+  /**
+   * Returns the backup queue for the given follower, creating the queue if necessary.
+   *
+   * @param memberId the follower identifier
+   * @return the backup queue for the given follower
+   */
+  protected BackupQueue queue(String memberId) {
+    return queues.computeIfAbsent(memberId, BackupQueue::new);
+  }
+
+  @Override
+  public CompletableFuture<Void> backup(long index, int followers) {
+    if (followers <= 0 || backupIndex(followers) >= index) {
+      return CompletableFuture.completedFuture(null);
+    }
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    backupFutures.computeIfAbsent(followers, f -> new TreeMap<>()).put(index, future);
+    backup();
+    return future;
+  }
+
+  /**
+   * Returns the highest index written to the journals of at least the given number of followers.
+   *
+   * @param followers the number of followers
+   * @return the highest index written to the journals of at least the given number of followers
+   */
+  private long backupIndex(int followers) {
+    List<Long> writtenIndexes = context.followers().stream()
+        .map(follower -> queue(follower).writtenIndex())
+        .sorted(Collections.reverseOrder())
+        .collect(Collectors.toList());
+    return followers <= writtenIndexes.size() ? writtenIndexes.get(followers - 1) : 0;
+  }
+
+  /**
+   * Returns a boolean indicating whether any appends are waiting for entries to be backed up.
+   *
+   * @return indicates whether any appends are waiting for entries to be backed up
+   */
+  protected boolean hasBackupFutures() {
+    return !backupFutures.isEmpty();
+  }
+
+  /**
+   * Sends pending entries to all followers.
+   */
+  protected void backup() {
+    context.followers().forEach(follower -> queue(follower).maybeBackup());
+  }
+
+  /**
+   * Returns the operations for the next batch of entries starting at the given index.
+   * <p>
+   * Operations read from the journal are cached until every follower has been sent them, so followers replicating
+   * the same entries share a single read and decoding of each entry.
+   *
+   * @param index the index of the first entry in the batch
+   * @return the operations for the batch
+   */
+  private List<BackupOperation> read(long index) {
+    List<BackupOperation> batch = new ArrayList<>();
+    long nextIndex = index;
+    while (batch.size() < MAX_BATCH_SIZE) {
+      BackupOperation operation = operations.get(nextIndex);
+      if (operation == null) {
+        if (reader.getNextIndex() != nextIndex) {
+          reader.reset(nextIndex);
+        }
+        if (!reader.hasNext()) {
+          break;
+        }
+        Indexed<LogEntry> entry = reader.next();
+        operation = BackupOperation.newBuilder()
+            .setIndex(entry.index())
+            .setTerm(entry.entry().getTerm())
+            .setTimestamp(entry.entry().getTimestamp())
+            .setValue(entry.entry().getValue())
+            .setCompression(entry.entry().getCompression())
+            .setProducerId(entry.entry().getProducerId())
+            .setSequence(entry.entry().getSequence())
+            .build();
+        operations.put(entry.index(), operation);
+        if (operations.size() > MAX_CACHED_OPERATIONS) {
+          operations.pollFirstEntry();
+        }
+      }
+      batch.add(operation);
+      nextIndex = operation.getIndex() + 1;
+    }
+    return batch;
+  }
+
+  /**
+   * Evicts the cached operations already sent to every follower.
+   */
+  private void release() {
+    long nextIndex = context.followers().stream()
+        .mapToLong(follower -> queue(follower).nextIndex)
+        .min()
+        .orElse(Long.MAX_VALUE);
+    operations.headMap(nextIndex).clear();
+  }
+
+  /**
+   * Returns a boolean indicating whether any appends are waiting for entries to be replicated.
+   *
+   * @return indicates whether any appends are waiting for entries to be replicated
+   */
+  protected boolean hasReplicateFutures() {
+    return false;
+  }
+
+  /**
+   * Returns a boolean indicating whether a batch should be sent to the given queue's follower.
+   *
+   * @param queue the backup queue
+   * @return indicates whether to send a batch to the follower
+   */
+  protected abstract boolean isReady(BackupQueue queue);
+
+  /**
+   * Called when a follower acknowledges entries.
+   *
+   * @param queue the backup queue of the follower that acknowledged entries
+   */
+  protected void acknowledge(BackupQueue queue) {
+    Iterator<Map.Entry<Integer, NavigableMap<Long, CompletableFuture<Void>>>> iterator =
+        backupFutures.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Integer, NavigableMap<Long, CompletableFuture<Void>>> entry = iterator.next();
+      NavigableMap<Long, CompletableFuture<Void>> backedUp =
+          entry.getValue().headMap(backupIndex(entry.getKey()), true);
+      backedUp.values().forEach(future -> future.complete(null));
+      backedUp.clear();
+      if (entry.getValue().isEmpty()) {
+        iterator.remove();
+      }
+    }
+  }
+
+  @Override
+  public void reopen() {
+    JournalReader<LogEntry> previous = reader;
+    reader = context.journal().openReader(previous.getNextIndex());
+    previous.close();
+    queues.values().forEach(BackupQueue::reopen);
+  }
+
+  @Override
+  public void close() {
+    queues.values().forEach(BackupQueue::close);
+    reader.close();
+    operations.clear();
+    backupFutures.values().forEach(futures -> futures.values()
+        .forEach(future -> future.completeExceptionally(new IllegalStateException("Not the primary"))));
+    backupFutures.clear();
+  }
+
+  /**
+   * Follower backup queue.
+   */
+  protected final class BackupQueue {
+    private final String memberId;
+    private final Histogram batchSize;
+    private final Histogram rtt;
+    private final Counter installBytes;
+    private final MetricId batchSizeId;
+    private final MetricId rttId;
+    private final MetricId installBytesId;
+    private final MetricId lagEntriesId;
+    private final MetricId lagBytesId;
+    private volatile long lag;
+    private long nextIndex;
+    private long matchIndex;
+    private long writtenIndex;
+    private long flushedIndex;
+    private boolean matched;
+    private boolean inProgress;
+    private boolean open = true;
+    private long lastSent;
+    private SegmentTransfer transfer;
+
+    BackupQueue(String memberId) {
+      this.memberId = memberId;
+      this.nextIndex = context.writer().getLastIndex() + 1;
+      this.batchSizeId = context.metricId("log.backup.batch.size", "follower", memberId);
+      this.rttId = context.metricId("log.backup.rtt", "follower", memberId);
+      this.installBytesId = context.metricId("log.backup.install.bytes", "follower", memberId);
+      this.batchSize = context.metrics().histogram(batchSizeId);
+      this.rtt = context.metrics().histogram(rttId);
+      this.installBytes = context.metrics().counter(installBytesId);
+      this.lagEntriesId = context.metricId("log.replication.lag.entries", "follower", memberId);
+      this.lagBytesId = context.metricId("log.replication.lag.bytes", "follower", memberId);
+      context.metrics().gauge(lagEntriesId, () -> lag);
+      context.metrics().gauge(lagBytesId, () -> lag * context.entrySize());
+    }
+
+    /**
+     * Returns the highest index known to be replicated to the follower.
+     *
+     * @return the highest index known to be replicated to the follower
+     */
+    long matchIndex() {
+      return matchIndex;
+    }
+
+    /**
+     * Returns the highest index known to be written to the follower's journal.
+     *
+     * @return the highest index known to be written to the follower's journal
+     */
+    long writtenIndex() {
+      return writtenIndex;
+    }
+
+    /**
+     * Returns the highest index known to reach the guarantee of the given ack mode on the follower.
+     *
+     * @param ackMode the ack mode
+     * @return the highest index known to be received, written or flushed by the follower
+     */
+    long ackedIndex(AckMode ackMode) {
+      switch (ackMode) {
+        case RECEIVED:
+          return matchIndex;
+        case FLUSHED:
+          return flushedIndex;
+        default:
+          return writtenIndex;
+      }
+    }
+
+    /**
+     * Returns the number of entries not yet sent to the follower.
+     *
+     * @return the number of entries not yet sent to the follower
+     */
+    long pendingEntries() {
+      return context.writer().getLastIndex() - nextIndex + 1;
+    }
+
+    /**
+     * Returns the time at which the last batch was sent to the follower.
+     *
+     * @return the time at which the last batch was sent to the follower
+     */
+    long lastSent() {
+      return lastSent;
+    }
+
+    /**
+     * Sends the next batch if no batch is already in progress and the follower is behind or must be probed, or if
+     * appends are waiting for acknowledged entries to reach the required guarantee.
+     */
+    void maybeBackup() {
+      lag = context.writer().getLastIndex() - matchIndex;
+      if (open && !inProgress && (!matched || (pendingEntries() > 0 && isReady(this)) || isWaiting())) {
+        backup();
+      }
+    }
+
+    /**
+     * Returns a boolean indicating whether appends are waiting for entries acknowledged by the follower to reach the
+     * required guarantee.
+     */
+    private boolean isWaiting() {
+      return (writtenIndex < matchIndex && hasBackupFutures())
+          || (ackedIndex(context.ackMode()) < matchIndex && hasReplicateFutures());
+    }
+
+    /**
+     * Sends the next batch of entries to the follower.
+     */
+    private void backup() {
+      inProgress = true;
+
+      List<JournalSegment<LogEntry>> segments = installSegments();
+      if (!segments.isEmpty()) {
+        log.debug("Installing segments up to index {} on {}", segments.get(segments.size() - 1).lastIndex(), memberId);
+        transfer = new SegmentTransfer(segments);
+        install();
+        return;
+      }
+
+      long prevIndex = nextIndex - 1;
+      BackupRequest.Builder request = BackupRequest.newBuilder()
+          .setLeader(context.serverId())
+          .setTerm(context.currentTerm())
+          .setIndex(context.getCommitIndex())
+          .setPrevIndex(prevIndex)
+          .setPrevTerm(context.getTerm(prevIndex));
+
+      List<BackupOperation> batch = read(nextIndex);
+      request.addAllOperations(batch);
+      long batchIndex = batch.isEmpty() ? prevIndex : batch.get(batch.size() - 1).getIndex();
+      log.trace("Sending {} to {}", request, memberId);
+      batchSize.record(request.getOperationsCount());
+      lastSent = System.currentTimeMillis();
+      long sendTime = System.nanoTime();
+      context.protocol().backup(memberId, request.build()).whenCompleteAsync((response, error) -> {
+        if (!open) {
+          return;
+        }
+        if (error == null) {
+          rtt.record(System.nanoTime() - sendTime);
+          log.trace("Received {} from {}", response, memberId);
+          if (response.getStatus() == ResponseStatus.OK) {
+            boolean progressed = !matched || batchIndex > prevIndex
+                || (response.getAck() == AckMode.RECEIVED && prevIndex > writtenIndex)
+                || Math.min(response.getFlushedIndex(), batchIndex) > flushedIndex;
+            matched = true;
+            matchIndex = batchIndex;
+            writtenIndex = response.getAck() == AckMode.RECEIVED ? Math.max(writtenIndex, prevIndex) : batchIndex;
+            flushedIndex = Math.max(flushedIndex, Math.min(response.getFlushedIndex(), batchIndex));
+            nextIndex = batchIndex + 1;
+            release();
+            acknowledge(this);
+            if (progressed || (pendingEntries() > 0 && isReady(this))) {
+              inProgress = false;
+              maybeBackup();
+            } else {
+              retry();
+            }
+          } else if (response.getStatus() == ResponseStatus.LOG_MISMATCH) {
+            reconcile(response);
+            if (nextIndex < context.getFirstIndex() && installSegments().isEmpty()) {
+              log.debug("Cannot replicate compacted entries to {}", memberId);
+              retry();
+            } else {
+              inProgress = false;
+              maybeBackup();
+            }
+          } else {
+            log.trace("Replication to {} failed!", memberId);
+            retry();
+          }
+        } else {
+          log.trace("Replication to {} failed! {}", memberId, error);
+          retry();
+        }
+      }, context.threadContext());
+    }
+
+    /**
+     * Returns the closed segments to install on the follower rather than sending it batches.
+     *
+     * @return the closed segments to install, starting with the segment containing the next index, or an empty list
+     *     if batches are to be sent
+     */
+    private List<JournalSegment<LogEntry>> installSegments() {
+      long threshold = context.installThreshold();
+      if (threshold == 0 || (pendingEntries() <= threshold && nextIndex >= context.getFirstIndex())) {
+        return Collections.emptyList();
+      }
+      List<JournalSegment<LogEntry>> segments = new ArrayList<>(context.journal().segments(nextIndex));
+      segments.remove(segments.size() - 1);
+      return segments;
+    }
+
+    /**
+     * Sends the next chunk of the segments being installed on the follower.
+     * <p>
+     * Chunks are sent one at a time. If a chunk fails, the transfer is abandoned and retried from the first segment.
+     */
+    private void install() {
+      SegmentTransfer transfer = this.transfer;
+      InstallRequest request;
+      try {
+        InstallRequest.Builder builder = transfer.next()
+            .setLeader(context.serverId())
+            .setTerm(context.currentTerm())
+            .setIndex(context.getCommitIndex());
+        if (builder.getComplete()) {
+          builder.addAllSessions(context.sessions().snapshot(transfer.lastIndex()));
+        }
+        request = builder.build();
+      } catch (IOException e) {
+        log.warn("Failed to read segment to install on {}", memberId, e);
+        abort();
+        return;
+      }
+
+      lastSent = System.currentTimeMillis();
+      context.protocol().install(memberId, request).whenCompleteAsync((response, error) -> {
+        if (!open || transfer != this.transfer) {
+          return;
+        }
+        if (error == null && response.getStatus() == ResponseStatus.OK) {
+          installBytes.add(request.getData().size());
+          if (request.getComplete()) {
+            log.debug("Installed segments up to index {} on {}", transfer.lastIndex(), memberId);
+            this.transfer = null;
+            inProgress = false;
+            matched = true;
+            matchIndex = transfer.lastIndex();
+            writtenIndex = transfer.lastIndex();
+            flushedIndex = transfer.lastIndex();
+            nextIndex = transfer.lastIndex() + 1;
+            acknowledge(this);
+            maybeBackup();
+          } else {
+            install();
+          }
+        } else {
+          log.trace("Installing segments on {} failed! {}", memberId, error);
+          abort();
+        }
+      }, context.threadContext());
+    }
+
+    /**
+     * Abandons the segment transfer and retries after a delay.
+     */
+    private void abort() {
+      transfer.close();
+      transfer = null;
+      retry();
+    }
+
+    /**
+     * Moves the next index back to where the follower's journal diverges from the leader's.
+     * <p>
+     * If the leader's journal contains the follower's last entry, the follower's journal is a prefix of the leader's.
+     * Otherwise, if the leader's journal contains the conflicting term, the journals match up to the last entry in
+     * that term. Otherwise, the entire conflicting term must be replaced.
+     *
+     * @param response the follower's mismatch response
+     */
+    private void reconcile(BackupResponse response) {
+      long index;
+      if (response.getLastIndex() < nextIndex && context.getTerm(response.getLastIndex()) == response.getLastTerm()) {
+        index = response.getLastIndex() + 1;
+      } else if (response.getConflictTerm() > 0) {
+        long termIndex = context.getLastIndexForTerm(response.getConflictTerm());
+        if (termIndex > 0 && context.getTerm(termIndex) == response.getConflictTerm()) {
+          index = termIndex + 1;
+        } else {
+          index = response.getConflictIndex();
+        }
+      } else {
+        index = response.getConflictIndex();
+      }
+
+      nextIndex = Math.max(Math.min(index, nextIndex - 1), 1);
+      writtenIndex = Math.min(writtenIndex, nextIndex - 1);
+      flushedIndex = Math.min(flushedIndex, nextIndex - 1);
+      matched = false;
+      log.debug("Reconciling {} from index {}", memberId, nextIndex);
+    }
+
+    /**
+     * Retries the current batch after a delay.
+     */
+    private void retry() {
+      context.threadContext().schedule(RETRY_DELAY, () -> {
+        inProgress = false;
+        if (!matched) {
+          maybeBackup();
+        } else if (open && (pendingEntries() > 0 || isWaiting())) {
+          backup();
+        }
+      });
+    }
+
+    /**
+     * Abandons the segment transfer, whose files may have been replaced, and retries it from the reopened journal.
+     */
+    void reopen() {
+      if (transfer != null) {
+        abort();
+      }
+    }
+
+    /**
+     * Closes the queue.
+     */
+    void close() {
+      open = false;
+      context.metrics().remove(lagEntriesId);
+      context.metrics().remove(lagBytesId);
+      context.metrics().remove(batchSizeId);
+      context.metrics().remove(rttId);
+      context.metrics().remove(installBytesId);
+      if (transfer != null) {
+        transfer.close();
+      }
+    }
+  }
+}
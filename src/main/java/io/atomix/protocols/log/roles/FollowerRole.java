@@ -17,21 +17,32 @@ package io.atomix.protocols.log.roles;
 
 import java.util.concurrent.CompletableFuture;
 
+import io.atomix.protocols.log.AckMode;
 import io.atomix.protocols.log.DistributedLogServer;
 import io.atomix.protocols.log.LogEntry;
 import io.atomix.protocols.log.impl.DistributedLogServerContext;
 import io.atomix.protocols.log.protocol.BackupOperation;
 import io.atomix.protocols.log.protocol.BackupRequest;
 import io.atomix.protocols.log.protocol.BackupResponse;
+import io.atomix.protocols.log.protocol.InstallRequest;
+import io.atomix.protocols.log.protocol.InstallResponse;
 import io.atomix.protocols.log.protocol.ResponseStatus;
 import io.atomix.storage.StorageException;
-import io.atomix.storage.journal.JournalReader;
+import io.atomix.storage.journal.Indexed;
 import io.atomix.storage.journal.JournalWriter;
 
 /**
  * Backup role.
+ * <p>
+ * Batches are acknowledged according to the server's {@link AckMode}. Batches acknowledged on receipt are written on
+ * the server thread once the acknowledgement has been sent, and always before the next batch is handled.
+ * <p>
+ * A follower too far behind the leader is sent the leader's closed segment files instead of batches. The files are
+ * staged as they are received and replace the journal once the last chunk has been received.
  */
 public class FollowerRole extends LogServerRole {
+  private BackupRequest pending;
+
   public FollowerRole(DistributedLogServerContext service) {
     super(DistributedLogServer.Role.FOLLOWER, service);
   }
@@ -40,6 +51,9 @@ public class FollowerRole extends LogServerRole {
   public CompletableFuture<BackupResponse> backup(BackupRequest request) {
     logRequest(request);
 
+    // Write any batch acknowledged on receipt before handling the next one.
+    writePending();
+
     // If the term is greater than the node's current term, update the term.
     if (request.getTerm() > context.currentTerm()) {
       context.resetTerm(request.getTerm(), request.getLeader());
@@ -52,48 +66,209 @@ public class FollowerRole extends LogServerRole {
     }
 
     JournalWriter<LogEntry> writer = context.writer();
-    JournalReader<LogEntry> reader = context.reader();
 
-    // Iterate through all operations in the batch and append entries.
-    for (BackupOperation operation : request.getOperationsList()) {
-
-      // If the reader's next index does not align with the operation index, reset the reader.
-      if (reader.getNextIndex() != operation.getIndex()) {
-        reader.reset(operation.getIndex());
+    // If the entry preceding the batch does not match the leader's log, reject the batch and report where the logs
+    // diverge. Entries preceding the first index have been compacted and are therefore already committed.
+    long prevIndex = request.getPrevIndex();
+    if (prevIndex > writer.getLastIndex()) {
+      return CompletableFuture.completedFuture(logResponse(mismatch(writer.getLastIndex() + 1, 0)));
+    } else if (prevIndex >= context.getFirstIndex()) {
+      long prevTerm = context.getTerm(prevIndex);
+      if (prevTerm != request.getPrevTerm()) {
+        return CompletableFuture.completedFuture(logResponse(mismatch(context.getTermStartIndex(prevIndex), prevTerm)));
       }
+    }
 
-      // If the reader has no next entry, append the entry to the journal.
-      if (!reader.hasNext()) {
-        try {
-          writer.append(LogEntry.newBuilder()
-              .setTerm(operation.getTerm())
-              .setTimestamp(operation.getTimestamp())
-              .setValue(operation.getValue())
-              .build());
-        } catch (StorageException e) {
-          return CompletableFuture.completedFuture(BackupResponse.newBuilder()
-              .setStatus(ResponseStatus.ERROR)
-              .build());
+    long matchIndex = request.getOperationsCount() > 0
+        ? request.getOperations(request.getOperationsCount() - 1).getIndex()
+        : prevIndex;
+    switch (context.ackMode()) {
+      case RECEIVED:
+        // Acknowledge the batch now that it's known to follow the journal, and write it once the response is sent.
+        pending = request;
+        context.threadContext().execute(this::writePending);
+        return CompletableFuture.completedFuture(logResponse(BackupResponse.newBuilder()
+            .setStatus(ResponseStatus.OK)
+            .setLastIndex(matchIndex)
+            .setLastTerm(request.getOperationsCount() > 0
+                ? request.getOperations(request.getOperationsCount() - 1).getTerm()
+                : request.getPrevTerm())
+            .setAck(AckMode.RECEIVED)
+            .setFlushedIndex(context.flushedIndex())
+            .build()));
+      case FLUSHED:
+        BackupResponse flushed = write(request);
+        if (flushed.getStatus() != ResponseStatus.OK) {
+          return CompletableFuture.completedFuture(logResponse(flushed));
         }
+        return context.flush(matchIndex).thenApply(v -> logResponse(flushed.toBuilder()
+            .setFlushedIndex(Math.max(context.flushedIndex(), matchIndex))
+            .build()));
+      default:
+        return CompletableFuture.completedFuture(logResponse(write(request)));
+    }
+  }
+
+  @Override
+  public CompletableFuture<InstallResponse> install(InstallRequest request) {
+    logRequest(request);
+
+    // Write any batch acknowledged on receipt before its entries are replaced.
+    writePending();
+
+    if (request.getTerm() > context.currentTerm()) {
+      context.resetTerm(request.getTerm(), request.getLeader());
+    } else if (request.getTerm() < context.currentTerm()) {
+      return CompletableFuture.completedFuture(logResponse(InstallResponse.newBuilder()
+          .setStatus(ResponseStatus.ERROR)
+          .build()));
+    }
+
+    try {
+      if (!context.stage(request)) {
+        log.debug("Rejected out of order chunk of segment {}", request.getSegmentId());
+        return CompletableFuture.completedFuture(logResponse(InstallResponse.newBuilder()
+            .setStatus(ResponseStatus.ERROR)
+            .build()));
+      }
+    } catch (StorageException e) {
+      log.warn("Failed to install segments", e);
+      return CompletableFuture.completedFuture(logResponse(InstallResponse.newBuilder()
+          .setStatus(ResponseStatus.ERROR)
+          .build()));
+    }
+
+    if (!request.getComplete()) {
+      return CompletableFuture.completedFuture(logResponse(InstallResponse.newBuilder()
+          .setStatus(ResponseStatus.OK)
+          .setLastIndex(context.writer().getLastIndex())
+          .build()));
+    }
+
+    return context.installSegments(request).handle((result, error) -> {
+      if (error != null) {
+        log.warn("Failed to install segments", error);
+        return logResponse(InstallResponse.newBuilder()
+            .setStatus(ResponseStatus.ERROR)
+            .build());
       }
-      // If the next entry's term does not match the operation term, append the entry to the journal.
-      else if (reader.next().entry().getTerm() != operation.getTerm()) {
-        writer.truncate(operation.getIndex());
-        try {
-          writer.append(LogEntry.newBuilder()
-              .setTerm(operation.getTerm())
-              .setTimestamp(operation.getTimestamp())
-              .setValue(operation.getValue())
-              .build());
-        } catch (StorageException e) {
-          return CompletableFuture.completedFuture(BackupResponse.newBuilder()
-              .setStatus(ResponseStatus.ERROR)
-              .build());
+
+      // Once installed, the journal must end with the last entry in the installed segments.
+      long lastIndex = context.writer().getLastIndex();
+      return logResponse(InstallResponse.newBuilder()
+          .setStatus(lastIndex == request.getLastIndex() ? ResponseStatus.OK : ResponseStatus.ERROR)
+          .setLastIndex(lastIndex)
+          .build());
+    });
+  }
+
+  /**
+   * Writes the batch acknowledged on receipt, if any.
+   * <p>
+   * If the batch cannot be written, the journal falls behind the leader's, and the leader finds where the journals
+   * diverge when the next batch is rejected.
+   */
+  private void writePending() {
+    BackupRequest request = pending;
+    if (request != null) {
+      pending = null;
+      BackupResponse response = write(request);
+      if (response.getStatus() != ResponseStatus.OK) {
+        log.warn("Failed to write acknowledged batch following index {}", request.getPrevIndex());
+      }
+    }
+  }
+
+  /**
+   * Writes a batch known to follow the journal.
+   *
+   * @param request the backup request
+   * @return the response acknowledging the written batch
+   */
+  private BackupResponse write(BackupRequest request) {
+    JournalWriter<LogEntry> writer = context.writer();
+
+    // Iterate through all operations in the batch and append entries.
+    for (BackupOperation operation : request.getOperationsList()) {
+      long lastIndex = writer.getLastIndex();
+      if (operation.getIndex() < context.getFirstIndex()) {
+        continue;
+      } else if (operation.getIndex() > lastIndex + 1) {
+        return mismatch(lastIndex + 1, 0);
+      } else if (operation.getIndex() <= lastIndex) {
+        // If the entry's term matches the operation term, the entry is already in the journal.
+        if (context.getTerm(operation.getIndex()) == operation.getTerm()) {
+          continue;
         }
+
+        // Otherwise, remove the conflicting entry and all entries following it.
+        context.truncate(operation.getIndex() - 1);
+      }
+
+      try {
+        append(writer, operation);
+      } catch (StorageException e) {
+        return BackupResponse.newBuilder()
+            .setStatus(ResponseStatus.ERROR)
+            .setLastIndex(writer.getLastIndex())
+            .build();
       }
     }
-    return CompletableFuture.completedFuture(logResponse(BackupResponse.newBuilder()
+
+    // Commit entries up to the leader's commit index that are known to match the leader's journal.
+    long matchIndex = request.getOperationsCount() > 0
+        ? request.getOperations(request.getOperationsCount() - 1).getIndex()
+        : request.getPrevIndex();
+    context.setCommitIndex(Math.min(request.getIndex(), matchIndex));
+
+    return BackupResponse.newBuilder()
         .setStatus(ResponseStatus.OK)
-        .build()));
+        .setLastIndex(writer.getLastIndex())
+        .setLastTerm(context.getTerm(writer.getLastIndex()))
+        .setAck(context.ackMode())
+        .setFlushedIndex(context.flushedIndex())
+        .build();
+  }
+
+  @Override
+  public void close() {
+    writePending();
+  }
+
+  /**
+   * Returns a response rejecting a batch that does not follow the journal.
+   *
+   * @param conflictIndex the first index of the conflicting term, or the next index if the journal is too short
+   * @param conflictTerm  the conflicting term, or {@code 0} if the journal is too short
+   * @return the backup response
+   */
+  private BackupResponse mismatch(long conflictIndex, long conflictTerm) {
+    long lastIndex = context.writer().getLastIndex();
+    return BackupResponse.newBuilder()
+        .setStatus(ResponseStatus.LOG_MISMATCH)
+        .setLastIndex(lastIndex)
+        .setLastTerm(context.getTerm(lastIndex))
+        .setConflictIndex(conflictIndex)
+        .setConflictTerm(conflictTerm)
+        .build();
+  }
+
+  /**
+   * Appends the given operation to the journal.
+   */
+  private void append(JournalWriter<LogEntry> writer, BackupOperation operation) {
+    Indexed<LogEntry> entry = writer.append(LogEntry.newBuilder()
+        .setTerm(operation.getTerm())
+        .setTimestamp(operation.getTimestamp())
+        .setValue(operation.getValue())
+        .setCompression(operation.getCompression())
+        .setProducerId(operation.getProducerId())
+        .setSequence(operation.getSequence())
+        .build());
+    context.appended(entry);
+    if (!operation.getProducerId().isEmpty()) {
+      context.sessions().record(
+          operation.getProducerId(), operation.getSequence(), entry.index(), operation.getTimestamp());
+    }
   }
 }
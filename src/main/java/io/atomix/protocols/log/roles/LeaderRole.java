@@ -21,15 +21,18 @@ import java.util.concurrent.CompletableFuture;
 
 import com.google.common.collect.Maps;
 import io.atomix.protocols.log.DistributedLogServer;
+import io.atomix.protocols.log.Durability;
 import io.atomix.protocols.log.LogEntry;
 import io.atomix.protocols.log.impl.DistributedLogServerContext;
+import io.atomix.protocols.log.metrics.Histogram;
+import io.atomix.protocols.log.metrics.MetricId;
 import io.atomix.protocols.log.protocol.AppendRequest;
 import io.atomix.protocols.log.protocol.AppendResponse;
-import io.atomix.protocols.log.protocol.BackupOperation;
+import io.atomix.protocols.log.protocol.ConsumeControl;
 import io.atomix.protocols.log.protocol.ConsumeRequest;
 import io.atomix.protocols.log.protocol.ConsumeResponse;
+import io.atomix.protocols.log.protocol.EntryCompression;
 import io.atomix.protocols.log.protocol.LogRecord;
-import io.atomix.protocols.log.protocol.ResetRequest;
 import io.atomix.protocols.log.protocol.ResponseStatus;
 import io.atomix.storage.StorageException;
 import io.atomix.storage.journal.Indexed;
@@ -42,9 +45,14 @@ import io.atomix.utils.stream.StreamHandler;
 public class LeaderRole extends LogServerRole {
   private final Replicator replicator;
   private final Map<ConsumerKey, ConsumerSender> consumers = Maps.newHashMap();
+  private final Map<Long, CompletableFuture<AppendResponse>> appends = Maps.newHashMap();
+  private final Histogram journalTime;
+  private final Histogram replicationTime;
 
   public LeaderRole(DistributedLogServerContext context) {
     super(DistributedLogServer.Role.LEADER, context);
+    this.journalTime = context.metrics().histogram(context.metricId("log.append.journal.time"));
+    this.replicationTime = context.metrics().histogram(context.metricId("log.append.replication.time"));
     switch (context.replicationStrategy()) {
       case SYNCHRONOUS:
         replicator = new SynchronousReplicator(context, log);
@@ -55,30 +63,69 @@ public class LeaderRole extends LogServerRole {
       default:
         throw new AssertionError();
     }
+    replicator.start();
   }
 
   @Override
   public CompletableFuture<AppendResponse> append(AppendRequest request) {
     logRequest(request);
+    String producerId = request.getProducerId();
+    if (!producerId.isEmpty()) {
+      // If the sequence number has already been appended, respond with the original index rather than appending
+      // a duplicate entry. If the original append is still being replicated, wait for it to complete. Otherwise, the
+      // original append may have failed after its entry was written, so wait for the original entry to reach the
+      // requested durability, which it already has unless the original append failed.
+      long index = context.sessions().getIndex(producerId, request.getSequence());
+      if (index > 0) {
+        CompletableFuture<AppendResponse> future = appends.get(index);
+        if (future != null) {
+          return future;
+        }
+        CompletableFuture<Void> replicated = index > context.getCommitIndex()
+            ? replicator.replicate(index)
+            : CompletableFuture.completedFuture(null);
+        return durable(index, request.getDurability(), replicated)
+            .thenApply(v -> logResponse(AppendResponse.newBuilder()
+                .setStatus(ResponseStatus.OK)
+                .setIndex(index)
+                .build()));
+      } else if (!context.sessions().isNext(producerId, request.getSequence())) {
+        return CompletableFuture.completedFuture(logResponse(AppendResponse.newBuilder()
+            .setStatus(ResponseStatus.OUT_OF_SEQUENCE)
+            .build()));
+      }
+    }
+
     try {
+      long startTime = System.nanoTime();
       Indexed<LogEntry> entry = context.journal().writer().append(LogEntry.newBuilder()
           .setTerm(context.currentTerm())
           .setTimestamp(System.currentTimeMillis())
           .setValue(request.getValue())
+          .setProducerId(producerId)
+          .setSequence(request.getSequence())
           .build());
-      return replicator.replicate(BackupOperation.newBuilder()
-          .setIndex(entry.index())
-          .setTerm(entry.entry().getTerm())
-          .setTimestamp(entry.entry().getTimestamp())
-          .setValue(entry.entry().getValue())
-          .build())
-          .thenApply(v -> {
+      long appendTime = System.nanoTime();
+      journalTime.record(appendTime - startTime);
+      context.appended(entry);
+      if (!producerId.isEmpty()) {
+        context.sessions().record(producerId, request.getSequence(), entry.index(), entry.entry().getTimestamp());
+      }
+      CompletableFuture<Void> replicated = replicator.replicate(entry.index())
+          .thenRun(() -> {
+            replicationTime.record(System.nanoTime() - appendTime);
             consumers.values().forEach(consumer -> consumer.next());
-            return logResponse(AppendResponse.newBuilder()
-                .setStatus(ResponseStatus.OK)
-                .setIndex(entry.index())
-                .build());
           });
+      CompletableFuture<AppendResponse> future = durable(entry.index(), request.getDurability(), replicated)
+          .thenApply(v -> logResponse(AppendResponse.newBuilder()
+              .setStatus(ResponseStatus.OK)
+              .setIndex(entry.index())
+              .build()));
+      if (!producerId.isEmpty() && !future.isDone()) {
+        appends.put(entry.index(), future);
+        future.whenComplete((response, error) -> appends.remove(entry.index()));
+      }
+      return future;
     } catch (StorageException e) {
       return CompletableFuture.completedFuture(logResponse(AppendResponse.newBuilder()
           .setStatus(ResponseStatus.ERROR)
@@ -86,23 +133,73 @@ public class LeaderRole extends LogServerRole {
     }
   }
 
+  /**
+   * Returns a future to be completed once the entry at the given index reaches the given durability.
+   * <p>
+   * Appends with the default durability are acknowledged once the entry is replicated according to the server's
+   * replication strategy. Appends with any other durability are acknowledged once that durability is reached, even if
+   * the entry has not yet been committed, and the entry becomes visible to consumers once it's committed. When group
+   * flushing is enabled, appends other than {@link Durability#LEADER_WRITTEN} also wait for the leader to flush the
+   * entry.
+   *
+   * @param index      the index of the entry
+   * @param durability the durability requested by the append
+   * @param replicated a future to be completed once the entry is replicated according to the replication strategy
+   * @return a future to be completed once the entry reaches the requested durability
+   */
+  private CompletableFuture<Void> durable(long index, Durability durability, CompletableFuture<Void> replicated) {
+    switch (durability) {
+      case LEADER_WRITTEN:
+        return CompletableFuture.completedFuture(null);
+      case LEADER_FLUSHED:
+        return context.flush(index);
+      case QUORUM:
+        return replicator.backup(index, (context.followers().size() + 1) / 2)
+            .thenCompose(v -> context.durable(index));
+      case ALL:
+        return replicator.backup(index, context.followers().size())
+            .thenCompose(v -> context.durable(index));
+      default:
+        return replicated.thenCompose(v -> context.durable(index));
+    }
+  }
+
   @Override
   public CompletableFuture<Void> consume(ConsumeRequest request, StreamHandler<ConsumeResponse> handler) {
     logRequest(request);
+    ConsumerKey key = new ConsumerKey(request.getMemberId(), request.getConsumerId());
+    ConsumerSender previous = consumers.remove(key);
+    if (previous != null) {
+      previous.close();
+    }
     JournalReader<LogEntry> reader = context.journal().openReader(request.getIndex(), JournalReader.Mode.COMMITS);
-    ConsumerSender consumer = new ConsumerSender(request.getMemberId(), request.getConsumerId(), reader, handler);
-    consumers.put(new ConsumerKey(request.getMemberId(), request.getConsumerId()), consumer);
+    ConsumerSender consumer = new ConsumerSender(
+        request.getMemberId(), request.getConsumerId(), request.getSessionId(), request.getLimit(), reader, handler);
+    consumers.put(key, consumer);
     consumer.next();
     return CompletableFuture.completedFuture(null);
   }
 
   @Override
-  public void reset(ResetRequest request) {
-    logRequest(request);
-    ConsumerSender consumer = consumers.get(new ConsumerKey(request.getMemberId(), request.getConsumerId()));
-    if (consumer != null) {
-      consumer.reset(request.getIndex());
+  public void control(ConsumeControl control) {
+    logRequest(control);
+    ConsumerKey key = new ConsumerKey(control.getMemberId(), control.getConsumerId());
+    ConsumerSender consumer = consumers.get(key);
+    if (consumer == null || consumer.sessionId != control.getSessionId()) {
+      return;
     }
+    if (control.getClose()) {
+      consumers.remove(key);
+      consumer.close();
+    } else {
+      consumer.control(control);
+    }
+  }
+
+  @Override
+  public void reopen() {
+    replicator.reopen();
+    consumers.values().forEach(consumer -> consumer.reopen());
   }
 
   @Override
@@ -113,28 +210,57 @@ public class LeaderRole extends LogServerRole {
 
   /**
    * Consumer sender.
+   * <p>
+   * If the consumer set a limit, records are sent only up to the limit until the consumer raises it.
    */
   class ConsumerSender {
     private final String memberId;
     private final long consumerId;
-    private final JournalReader<LogEntry> reader;
+    private final long sessionId;
+    private JournalReader<LogEntry> reader;
     private final StreamHandler<ConsumeResponse> handler;
+    private final MetricId lagId;
+    private volatile long lag;
+    private long limit;
+    private long ackIndex;
     private boolean open = true;
 
-    ConsumerSender(String memberId, long consumerId, JournalReader<LogEntry> reader, StreamHandler<ConsumeResponse> handler) {
+    ConsumerSender(
+        String memberId,
+        long consumerId,
+        long sessionId,
+        long limit,
+        JournalReader<LogEntry> reader,
+        StreamHandler<ConsumeResponse> handler) {
       this.memberId = memberId;
       this.consumerId = consumerId;
+      this.sessionId = sessionId;
+      this.limit = limit;
       this.reader = reader;
       this.handler = handler;
+      this.lagId = context.metricId("log.consumer.lag", "member", memberId, "consumer", String.valueOf(consumerId));
+      context.metrics().gauge(lagId, () -> lag);
     }
 
     /**
-     * Resets the consumer to the given index.
+     * Applies a session control message from the consumer.
+     * <p>
+     * A seek to the index the sender will send next is redundant, for example when the consumer repeats a seek the
+     * sender has already applied, and is ignored so no records are resent.
      *
-     * @param index the index to which to reset the consumer
+     * @param control the control message
      */
-    void reset(long index) {
-      reader.reset(index);
+    void control(ConsumeControl control) {
+      if (control.getLimit() > 0) {
+        limit = control.getLimit();
+      }
+      if (control.getAck() > 0) {
+        ackIndex = control.getAck();
+        updateLag();
+      }
+      if (control.getSeek() > 0 && control.getSeek() != reader.getNextIndex()) {
+        reader.reset(control.getSeek());
+      }
       next();
     }
 
@@ -146,12 +272,15 @@ public class LeaderRole extends LogServerRole {
         return;
       }
       context.threadContext().execute(() -> {
-        if (reader.hasNext()) {
+        if (!open) {
+          return;
+        }
+        if (reader.hasNext() && (limit == 0 || reader.getNextIndex() <= limit)) {
           Indexed<LogEntry> entry = reader.next();
           LogRecord record = LogRecord.newBuilder()
               .setIndex(entry.index())
               .setTimestamp(entry.entry().getTimestamp())
-              .setValue(entry.entry().getValue())
+              .setValue(EntryCompression.decompress(entry.entry().getValue(), entry.entry().getCompression()))
               .build();
           boolean reset = reader.getFirstIndex() == entry.index();
           ConsumeResponse response = ConsumeResponse.newBuilder()
@@ -160,15 +289,36 @@ public class LeaderRole extends LogServerRole {
               .build();
           log.trace("Sending {} to {} at {}", response, memberId, consumerId);
           handler.next(response);
+          updateLag();
           next();
+        } else {
+          updateLag();
         }
       });
     }
 
+    /**
+     * Updates the consumer's lag from the last index it acknowledged, or the last index sent if it doesn't acknowledge
+     * records.
+     */
+    private void updateLag() {
+      lag = context.getCommitIndex() - (ackIndex > 0 ? ackIndex : reader.getNextIndex() - 1);
+    }
+
+    /**
+     * Reopens the consumer's reader at the next index to send.
+     */
+    void reopen() {
+      JournalReader<LogEntry> previous = reader;
+      reader = context.journal().openReader(previous.getNextIndex(), JournalReader.Mode.COMMITS);
+      previous.close();
+    }
+
     /**
      * Closes the consumer.
      */
     void close() {
+      context.metrics().remove(lagId);
       reader.close();
       handler.complete();
       open = false;
@@ -24,9 +24,13 @@ import io.atomix.protocols.log.protocol.AppendRequest;
 import io.atomix.protocols.log.protocol.AppendResponse;
 import io.atomix.protocols.log.protocol.BackupRequest;
 import io.atomix.protocols.log.protocol.BackupResponse;
+import io.atomix.protocols.log.protocol.ConsumeControl;
 import io.atomix.protocols.log.protocol.ConsumeRequest;
 import io.atomix.protocols.log.protocol.ConsumeResponse;
-import io.atomix.protocols.log.protocol.ResetRequest;
+import io.atomix.protocols.log.protocol.FetchRequest;
+import io.atomix.protocols.log.protocol.FetchResponse;
+import io.atomix.protocols.log.protocol.InstallRequest;
+import io.atomix.protocols.log.protocol.InstallResponse;
 import io.atomix.protocols.log.protocol.ResponseStatus;
 import io.atomix.utils.logging.ContextualLoggerFactory;
 import io.atomix.utils.logging.LoggerContext;
@@ -39,6 +43,8 @@ import static com.google.common.base.MoreObjects.toStringHelper;
  * Primary-backup role.
  */
 public abstract class LogServerRole {
+  private static final int MAX_FETCH_BYTES = 1024 * 1024 * 2;
+
   protected final Logger log;
   private final DistributedLogServer.Role role;
   protected final DistributedLogServerContext context;
@@ -79,13 +85,22 @@ public abstract class LogServerRole {
 
   /**
    * Handles an append response.
+   * <p>
+   * Only the leader accepts appends. Other roles reject the request with the current term and leader so the client
+   * can redirect the append.
    *
    * @param request the append request
    * @return future to be completed with the append response
    */
   public CompletableFuture<AppendResponse> append(AppendRequest request) {
     logRequest(request);
-    return CompletableFuture.completedFuture(logResponse(AppendResponse.newBuilder().setStatus(ResponseStatus.ERROR).build()));
+    AppendResponse.Builder response = AppendResponse.newBuilder()
+        .setStatus(ResponseStatus.NOT_LEADER)
+        .setTerm(context.currentTerm());
+    if (context.leader() != null) {
+      response.setLeader(context.leader());
+    }
+    return CompletableFuture.completedFuture(logResponse(response.build()));
   }
 
   /**
@@ -101,12 +116,47 @@ public abstract class LogServerRole {
   }
 
   /**
-   * Handles a reset request.
+   * Handles a consume session control message.
+   *
+   * @param control the control message
+   */
+  public void control(ConsumeControl control) {
+    logRequest(control);
+  }
+
+  /**
+   * Handles a fetch request.
+   * <p>
+   * Committed entries never change, so every role serves the committed entries it holds, starting at the requested
+   * index or the first index retained after compaction and ending at the requested end index, if any. Records are read
+   * until the next record would exceed the requested size, but at least one record is returned if any is committed.
+   * The response carries the committed range of the journal, so a fetch from an index beyond the commit index reads
+   * only the range. The range is captured on the server thread, and the records are read on the fetcher thread.
    *
-   * @param request the reset request
+   * @param request the fetch request
+   * @return future to be completed with the fetch response
    */
-  public void reset(ResetRequest request) {
+  public CompletableFuture<FetchResponse> fetch(FetchRequest request) {
     logRequest(request);
+    FetchResponse.Builder response = FetchResponse.newBuilder()
+        .setStatus(ResponseStatus.OK)
+        .setCommitIndex(context.getCommitIndex())
+        .setFirstIndex(context.getFirstIndex());
+    long index = Math.max(request.getIndex(), context.getFirstIndex());
+    long endIndex = Math.min(request.getEndIndex() > 0 ? request.getEndIndex() : Long.MAX_VALUE,
+        context.getCommitIndex());
+    if (index > endIndex) {
+      return CompletableFuture.completedFuture(logResponse(response.build()));
+    }
+    int maxBytes = request.getMaxBytes() > 0 ? Math.min(request.getMaxBytes(), MAX_FETCH_BYTES) : MAX_FETCH_BYTES;
+    return context.readCommitted(index, endIndex, maxBytes)
+        .thenApply(records -> logResponse(response.addAllRecords(records).build()))
+        .exceptionally(error -> {
+          log.warn("Failed to read entries from index {}", index, error);
+          return logResponse(FetchResponse.newBuilder()
+              .setStatus(ResponseStatus.ERROR)
+              .build());
+        });
   }
 
   /**
@@ -120,6 +170,25 @@ public abstract class LogServerRole {
     return CompletableFuture.completedFuture(logResponse(BackupResponse.newBuilder().setStatus(ResponseStatus.ERROR).build()));
   }
 
+  /**
+   * Handles an install request.
+   *
+   * @param request the install request
+   * @return future to be completed with the install response
+   */
+  public CompletableFuture<InstallResponse> install(InstallRequest request) {
+    logRequest(request);
+    return CompletableFuture.completedFuture(logResponse(InstallResponse.newBuilder().setStatus(ResponseStatus.ERROR).build()));
+  }
+
+  /**
+   * Reopens the role's journal readers after the journal has been closed and reopened.
+   * <p>
+   * Segment replacements leave the entries in the journal unchanged, so readers resume at the same index.
+   */
+  public void reopen() {
+  }
+
   /**
    * Closes the role.
    */
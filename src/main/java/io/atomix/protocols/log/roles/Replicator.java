@@ -17,20 +17,38 @@ package io.atomix.protocols.log.roles;
 
 import java.util.concurrent.CompletableFuture;
 
-import io.atomix.protocols.log.protocol.BackupOperation;
-
 /**
  * Backup replicator.
  */
 interface Replicator {
 
   /**
-   * Backs up the given operation.
+   * Starts replicating to the followers.
+   */
+  void start();
+
+  /**
+   * Backs up the entry at the given index.
    *
-   * @param operation the operation to back up
-   * @return a future to be completed with the operation index
+   * @param index the index of the entry to back up
+   * @return a future to be completed once the entry has been backed up
+   */
+  CompletableFuture<Void> replicate(long index);
+
+  /**
+   * Returns a future to be completed once the entry at the given index has been backed up to the given number of
+   * followers.
+   *
+   * @param index     the index of the entry
+   * @param followers the number of followers to which the entry must be backed up
+   * @return a future to be completed once the entry has been backed up to the given number of followers
+   */
+  CompletableFuture<Void> backup(long index, int followers);
+
+  /**
+   * Reopens the replicator's journal reader and abandons segment transfers after the journal has been reopened.
    */
-  CompletableFuture<Void> replicate(BackupOperation operation);
+  void reopen();
 
   /**
    * Closes the replicator.
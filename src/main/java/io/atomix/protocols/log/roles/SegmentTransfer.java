@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.protocols.log.roles;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+
+import com.google.protobuf.UnsafeByteOperations;
+import io.atomix.protocols.log.LogEntry;
+import io.atomix.protocols.log.protocol.InstallRequest;
+import io.atomix.storage.journal.JournalSegment;
+
+/**
+ * Transfer of closed journal segment files to a follower.
+ * <p>
+ * Segment files are sent as they are on disk, in chunks mapped directly from the files, so entries are neither read
+ * through the journal nor encoded again, and each chunk is copied only by the transport. Closed segments are no longer
+ * written, and a mapped chunk remains readable even if its segment is compacted while the chunk is being sent.
+ */
+final class SegmentTransfer implements AutoCloseable {
+  private static final int CHUNK_SIZE = 1024 * 1024;
+
+  private final Iterator<JournalSegment<LogEntry>> segments;
+  private final long lastIndex;
+  private JournalSegment<LogEntry> segment;
+  private FileChannel channel;
+  private long offset;
+
+  SegmentTransfer(List<JournalSegment<LogEntry>> segments) {
+    this.segments = segments.iterator();
+    this.lastIndex = segments.get(segments.size() - 1).lastIndex();
+  }
+
+  /**
+   * Returns the index of the last entry in the transferred segments.
+   *
+   * @return the index of the last entry in the transferred segments
+   */
+  long lastIndex() {
+    return lastIndex;
+  }
+
+  /**
+   * Returns a request carrying the next chunk of the segment files.
+   *
+   * @return the install request to which to add the leader's state
+   * @throws IOException if the segment file cannot be read
+   */
+  InstallRequest.Builder next() throws IOException {
+    if (channel == null) {
+      segment = segments.next();
+      channel = FileChannel.open(segment.file().file().toPath(), StandardOpenOption.READ);
+      offset = 0;
+    }
+
+    long size = channel.size();
+    long length = Math.min(CHUNK_SIZE, size - offset);
+    InstallRequest.Builder request = InstallRequest.newBuilder()
+        .setSegmentId(segment.id())
+        .setOffset(offset)
+        .setData(UnsafeByteOperations.unsafeWrap(channel.map(FileChannel.MapMode.READ_ONLY, offset, length)))
+        .setLastIndex(lastIndex);
+    offset += length;
+    if (offset >= size) {
+      close();
+      request.setSegmentComplete(true).setComplete(!segments.hasNext());
+    }
+    return request;
+  }
+
+  @Override
+  public void close() {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        // The mapped chunks remain readable.
+      }
+      channel = null;
+    }
+  }
+}
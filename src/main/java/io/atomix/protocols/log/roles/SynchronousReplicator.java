@@ -15,59 +15,58 @@
  */
 package io.atomix.protocols.log.roles;
 
-import java.util.Collection;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 
 import io.atomix.protocols.log.impl.DistributedLogServerContext;
-import io.atomix.protocols.log.protocol.BackupOperation;
-import io.atomix.protocols.log.protocol.BackupRequest;
-import io.atomix.protocols.log.protocol.ResponseStatus;
 import org.slf4j.Logger;
 
 /**
  * Synchronous replicator.
  */
-class SynchronousReplicator implements Replicator {
-  private final DistributedLogServerContext context;
-  private final Logger log;
-  private final Map<String, BackupQueue> queues = new HashMap<>();
+class SynchronousReplicator extends AbstractReplicator {
   private final Map<Long, CompletableFuture<Void>> futures = new LinkedHashMap<>();
 
   SynchronousReplicator(DistributedLogServerContext context, Logger log) {
-    this.context = context;
-    this.log = log;
+    super(context, log);
   }
 
   @Override
-  public CompletableFuture<Void> replicate(BackupOperation operation) {
+  public CompletableFuture<Void> replicate(long index) {
     if (context.followers().isEmpty()) {
-      context.setCommitIndex(operation.getIndex());
+      context.setCommitIndex(index);
       return CompletableFuture.completedFuture(null);
     }
 
     CompletableFuture<Void> future = new CompletableFuture<>();
-    futures.put(operation.getIndex(), future);
-    Collection<String> followers = context.followers();
-    for (String backup : followers) {
-      queues.computeIfAbsent(backup, BackupQueue::new).add(operation);
-    }
+    futures.put(index, future);
+    backup();
     return future;
   }
 
+  @Override
+  protected boolean isReady(BackupQueue queue) {
+    return true;
+  }
+
+  @Override
+  protected boolean hasReplicateFutures() {
+    return !futures.isEmpty();
+  }
+
+  @Override
+  protected void acknowledge(BackupQueue queue) {
+    super.acknowledge(queue);
+    completeFutures();
+  }
+
   /**
-   * Completes futures.
+   * Completes the futures of entries that reached the guarantee of the leader's ack mode on all followers.
    */
   private void completeFutures() {
     long commitIndex = context.followers().stream()
-        .map(follower -> queues.get(follower))
-        .filter(queue -> queue != null)
-        .map(queue -> queue.ackedIndex)
+        .map(follower -> queue(follower).ackedIndex(context.ackMode()))
         .reduce(Math::min)
         .orElse(0L);
     for (long i = context.getCommitIndex() + 1; i <= commitIndex; i++) {
@@ -81,79 +80,7 @@ class SynchronousReplicator implements Replicator {
 
   @Override
   public void close() {
+    super.close();
     futures.values().forEach(f -> f.completeExceptionally(new IllegalStateException("Not the primary")));
   }
-
-  /**
-   * Synchronous backup queue.
-   */
-  private final class BackupQueue {
-    private final Queue<BackupOperation> operations = new LinkedList<>();
-    private final String memberId;
-    private boolean inProgress;
-    private long ackedIndex;
-
-    BackupQueue(String memberId) {
-      this.memberId = memberId;
-    }
-
-    /**
-     * Adds an operation to the queue.
-     *
-     * @param operation the operation to add
-     */
-    void add(BackupOperation operation) {
-      operations.add(operation);
-      maybeBackup();
-    }
-
-    /**
-     * Sends the next batch if operations are queued and no backup is already in progress.
-     */
-    private void maybeBackup() {
-      if (!inProgress && !operations.isEmpty()) {
-        inProgress = true;
-        backup();
-      }
-    }
-
-    /**
-     * Sends the next batch of operations to the backup.
-     */
-    private void backup() {
-      List<BackupOperation> operations = new LinkedList<>();
-      long index = 0;
-      while (operations.size() < 100 && !this.operations.isEmpty()) {
-        BackupOperation operation = this.operations.remove();
-        operations.add(operation);
-        index = operation.getIndex();
-      }
-
-      long lastIndex = index;
-      BackupRequest request = BackupRequest.newBuilder()
-          .setLeader(context.serverId())
-          .setTerm(context.currentTerm())
-          .setIndex(context.getCommitIndex())
-          .addAllOperations(operations)
-          .build();
-
-      log.trace("Sending {} to {}", request, memberId);
-      context.protocol().backup(memberId, request).whenCompleteAsync((response, error) -> {
-        if (error == null) {
-          log.trace("Received {} from {}", response, memberId);
-          if (response.getStatus() == ResponseStatus.OK) {
-            ackedIndex = lastIndex;
-            completeFutures();
-          } else {
-            log.trace("Replication to {} failed!", memberId);
-          }
-        } else {
-          log.trace("Replication to {} failed! {}", memberId, error);
-        }
-        inProgress = false;
-        maybeBackup();
-      }, context.threadContext());
-      operations.clear();
-    }
-  }
 }
@@ -17,6 +17,8 @@ package io.atomix.log;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -26,16 +28,42 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import com.google.common.base.Strings;
+import com.google.protobuf.ByteString;
+import io.atomix.log.protocol.LinkConditions;
 import io.atomix.log.protocol.TestLogProtocolFactory;
+import io.atomix.log.protocol.TestNetwork;
+import io.atomix.protocols.log.AckMode;
+import io.atomix.protocols.log.Compression;
 import io.atomix.protocols.log.DistributedLogClient;
+import io.atomix.protocols.log.DistributedLogPartition;
+import io.atomix.protocols.log.DistributedLogProducer;
 import io.atomix.protocols.log.DistributedLogServer;
+import io.atomix.protocols.log.Durability;
+import io.atomix.protocols.log.Term;
+import io.atomix.protocols.log.TermProvider;
 import io.atomix.protocols.log.impl.DefaultDistributedLogServer;
+import io.atomix.protocols.log.impl.DistributedLogServerContext;
+import io.atomix.protocols.log.metrics.Histogram;
+import io.atomix.protocols.log.metrics.HistogramSnapshot;
+import io.atomix.protocols.log.metrics.MetricId;
+import io.atomix.protocols.log.metrics.MetricsExporter;
+import io.atomix.protocols.log.metrics.MetricsRegistry;
+import io.atomix.protocols.log.protocol.AppendRequest;
+import io.atomix.protocols.log.protocol.AppendResponse;
+import io.atomix.protocols.log.protocol.LogClientProtocol;
+import io.atomix.protocols.log.protocol.ResponseStatus;
 import io.atomix.utils.concurrent.Futures;
 import net.jodah.concurrentunit.ConcurrentTestCase;
 import org.junit.After;
@@ -68,6 +96,588 @@ public class DistributedLogTest extends ConcurrentTestCase {
     await(5000);
   }
 
+  @Test
+  public void testCompressedProducerConsumer() throws Throwable {
+    List<DistributedLogServer> members = createServers(3, builder -> builder
+        .withCompression(Compression.DEFLATE)
+        .withCompressionThreshold(64));
+    DistributedLogClient client1 = createClient();
+    DistributedLogClient client2 = createClient();
+
+    byte[] value = Strings.repeat("Hello world!", 100).getBytes();
+    client1.consumer().consume(1, record -> {
+      threadAssertTrue(Arrays.equals(value, record.getValue().toByteArray()));
+      resume();
+    });
+    for (int i = 0; i < 20; i++) {
+      client2.producer().append(value).get(5, TimeUnit.SECONDS);
+    }
+    await(5000, 20);
+
+    // Values are appended uncompressed, and closed segments are rewritten compressed in the background.
+    for (DistributedLogServer member : members) {
+      DistributedLogServerContext context = ((DefaultDistributedLogServer) member).context();
+      threadAssertEquals(Compression.NONE, context.journal().openReader(1).next().entry().getCompression());
+      CompletableFuture.supplyAsync(context::compress, context.threadContext())
+          .thenCompose(future -> future)
+          .get(5, TimeUnit.SECONDS);
+      threadAssertEquals(Compression.DEFLATE, context.journal().openReader(1).next().entry().getCompression());
+      threadAssertEquals(Compression.NONE, context.journal().openReader(20).next().entry().getCompression());
+    }
+
+    // Records are decompressed by the server, and consumers and producers continue once the segments are swapped.
+    List<io.atomix.service.protocol.LogRecord> records = client2.fetch(1, 0).get(5, TimeUnit.SECONDS);
+    threadAssertTrue(Arrays.equals(value, records.get(0).getValue().toByteArray()));
+    client2.producer().append(value).get(5, TimeUnit.SECONDS);
+    await(5000);
+  }
+
+  @Test
+  public void testByteBufferProducerConsumer() throws Throwable {
+    createServers(3);
+    DistributedLogClient client1 = createClient();
+    DistributedLogClient client2 = createClient();
+
+    ByteBuffer value = ByteBuffer.allocateDirect(12);
+    value.put("Hello world!".getBytes(StandardCharsets.UTF_8));
+    value.flip();
+    ByteBuffer[] values = new ByteBuffer[]{
+        ByteBuffer.wrap("Hello ".getBytes(StandardCharsets.UTF_8)),
+        ByteBuffer.wrap("world!".getBytes(StandardCharsets.UTF_8)),
+    };
+    client1.consumer().consume(1, record -> {
+      threadAssertEquals("Hello world!", record.getValue().toStringUtf8());
+      resume();
+    });
+    client2.producer().append(value).join();
+    client2.producer().append(values).join();
+    threadAssertEquals(0, value.position());
+    await(5000, 2);
+  }
+
+  @Test
+  public void testRedirectAppend() throws Throwable {
+    createServers(3);
+
+    // Point the client at a follower in a stale term to force the append to be redirected to the leader.
+    Term staleTerm = new Term(0, termProviderFactory.term().followers().get(0), Collections.emptyList());
+    String clientId = nextMemberId();
+    DistributedLogClient client = DistributedLogClient.builder()
+        .withClientId(clientId)
+        .withTermProvider(new TermProvider() {
+          @Override
+          public CompletableFuture<Term> getTerm() {
+            return CompletableFuture.completedFuture(staleTerm);
+          }
+
+          @Override
+          public CompletableFuture<Term> join() {
+            return CompletableFuture.completedFuture(staleTerm);
+          }
+
+          @Override
+          public CompletableFuture<Void> addListener(Consumer<Term> listener) {
+            return CompletableFuture.completedFuture(null);
+          }
+
+          @Override
+          public CompletableFuture<Void> removeListener(Consumer<Term> listener) {
+            return CompletableFuture.completedFuture(null);
+          }
+        })
+        .withProtocol(protocolFactory.newClientProtocol(clientId))
+        .build();
+    clients.add(client);
+
+    threadAssertEquals(1L, client.producer().append("Hello world!".getBytes()).get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testPipelinedProducer() throws Throwable {
+    createServers(3);
+    DistributedLogClient client1 = createClient();
+    DistributedLogClient client2 = createClient();
+
+    int count = 100;
+    AtomicInteger received = new AtomicInteger();
+    client1.consumer().consume(1, record -> {
+      int i = received.incrementAndGet();
+      threadAssertEquals((long) i, record.getIndex());
+      threadAssertEquals(String.valueOf(i), record.getValue().toStringUtf8());
+      if (i == count) {
+        resume();
+      }
+    });
+
+    List<CompletableFuture<Long>> futures = new ArrayList<>();
+    for (int i = 1; i <= count; i++) {
+      futures.add(client2.producer().append(String.valueOf(i).getBytes()));
+    }
+    for (int i = 1; i <= count; i++) {
+      threadAssertEquals((long) i, futures.get(i - 1).get(5, TimeUnit.SECONDS));
+    }
+    await(5000);
+  }
+
+  @Test
+  public void testEmulatedNetwork() throws Throwable {
+    protocolFactory.network().setConditions(LinkConditions.builder()
+        .withLatency(Duration.ofMillis(2))
+        .withJitter(Duration.ofMillis(2))
+        .withBandwidth(1024 * 1024)
+        .build());
+    createServers(3);
+    DistributedLogClient client1 = createClient();
+    DistributedLogClient client2 = createClient();
+
+    int count = 50;
+    AtomicInteger received = new AtomicInteger();
+    client1.consumer().consume(1, record -> {
+      int i = received.incrementAndGet();
+      threadAssertEquals((long) i, record.getIndex());
+      if (i == count) {
+        resume();
+      }
+    }).get(5, TimeUnit.SECONDS);
+
+    List<CompletableFuture<Long>> futures = new ArrayList<>();
+    for (int i = 1; i <= count; i++) {
+      futures.add(client2.producer().append(String.valueOf(i).getBytes()));
+    }
+    for (int i = 1; i <= count; i++) {
+      threadAssertEquals((long) i, futures.get(i - 1).get(5, TimeUnit.SECONDS));
+    }
+    await(5000);
+  }
+
+  @Test
+  public void testConsumeReorderedRecords() throws Throwable {
+    createServers(3);
+    DistributedLogClient client1 = createClient();
+    protocolFactory.network().setConditions(termProviderFactory.term().leader(), String.valueOf(memberId),
+        LinkConditions.builder()
+            .withLatency(Duration.ofMillis(1))
+            .withJitter(Duration.ofMillis(1))
+            .withReorderRate(.1)
+            .build());
+    DistributedLogClient client2 = createClient();
+
+    // Records overtaken on the way to the consumer should be resent and received in order exactly once, across
+    // more than one consumer window.
+    int count = 3000;
+    AtomicInteger received = new AtomicInteger();
+    client1.consumer().consume(1, record -> {
+      int i = received.incrementAndGet();
+      threadAssertEquals((long) i, record.getIndex());
+      if (i == count) {
+        resume();
+      }
+    }).get(5, TimeUnit.SECONDS);
+
+    List<CompletableFuture<Long>> futures = new ArrayList<>();
+    for (int i = 1; i <= count; i++) {
+      futures.add(client2.producer().append(String.valueOf(i).getBytes()));
+    }
+    for (int i = 1; i <= count; i++) {
+      threadAssertEquals((long) i, futures.get(i - 1).get(5, TimeUnit.SECONDS));
+    }
+    await(10000);
+    Thread.sleep(100);
+    threadAssertEquals(count, received.get());
+  }
+
+  @Test
+  public void testConsumeLostRecords() throws Throwable {
+    createServers(3);
+    DistributedLogClient client1 = createClient();
+    protocolFactory.network().setConditions(termProviderFactory.term().leader(), String.valueOf(memberId),
+        LinkConditions.builder()
+            .withLatency(Duration.ofMillis(1))
+            .withDropRate(.05)
+            .build());
+    DistributedLogClient client2 = createClient();
+
+    // Records lost on the way to the consumer, including resent records and the last records, should be resent and
+    // received in order exactly once.
+    int count = 500;
+    AtomicInteger received = new AtomicInteger();
+    client1.consumer().consume(1, record -> {
+      int i = received.incrementAndGet();
+      threadAssertEquals((long) i, record.getIndex());
+      if (i == count) {
+        resume();
+      }
+    }).get(5, TimeUnit.SECONDS);
+
+    List<CompletableFuture<Long>> futures = new ArrayList<>();
+    for (int i = 1; i <= count; i++) {
+      futures.add(client2.producer().append(String.valueOf(i).getBytes()));
+    }
+    for (int i = 1; i <= count; i++) {
+      threadAssertEquals((long) i, futures.get(i - 1).get(5, TimeUnit.SECONDS));
+    }
+    await(15000);
+    Thread.sleep(100);
+    threadAssertEquals(count, received.get());
+  }
+
+  @Test
+  public void testPartitionedFollower() throws Throwable {
+    TestNetwork network = protocolFactory.network().setTimeout(Duration.ofMillis(100));
+    createServers(3);
+    DistributedLogClient client = createClient();
+    threadAssertEquals(1L, client.producer().append("1".getBytes()).get(5, TimeUnit.SECONDS));
+
+    // Synchronous replication cannot commit while a follower is unreachable.
+    Term term = termProviderFactory.term();
+    network.partition(term.leader(), term.followers().get(0));
+    CompletableFuture<Long> future = client.producer().append("2".getBytes());
+    Thread.sleep(500);
+    threadAssertFalse(future.isDone());
+
+    network.heal();
+    threadAssertEquals(2L, future.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testAppendDurability() throws Throwable {
+    TestNetwork network = protocolFactory.network().setTimeout(Duration.ofMillis(100));
+    createServers(3);
+    DistributedLogProducer producer = createClient().producer();
+    threadAssertEquals(1L, producer.append(ByteString.copyFromUtf8("1")).get(5, TimeUnit.SECONDS));
+
+    // With a follower unreachable, appends can still reach the leader and a quorum but not all followers.
+    Term term = termProviderFactory.term();
+    network.partition(term.leader(), term.followers().get(0));
+    CompletableFuture<Long> all = producer.append(ByteString.copyFromUtf8("2"), Durability.ALL);
+    threadAssertEquals(3L, producer.append(ByteString.copyFromUtf8("3"), Durability.QUORUM).get(5, TimeUnit.SECONDS));
+    threadAssertEquals(4L, producer.append(ByteString.copyFromUtf8("4"), Durability.LEADER_FLUSHED)
+        .get(5, TimeUnit.SECONDS));
+    threadAssertEquals(5L, producer.append(ByteString.copyFromUtf8("5"), Durability.LEADER_WRITTEN)
+        .get(5, TimeUnit.SECONDS));
+    Thread.sleep(500);
+    threadAssertFalse(all.isDone());
+
+    network.heal();
+    threadAssertEquals(2L, all.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testGroupFlush() throws Throwable {
+    MetricsRegistry registry = new MetricsRegistry();
+    createServers(2, builder -> builder
+        .withMetricsRegistry(registry)
+        .withFlushInterval(Duration.ofMillis(20))
+        .withAckMode(AckMode.FLUSHED));
+    DistributedLogProducer producer = createClient().producer();
+    List<CompletableFuture<Long>> futures = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      futures.add(producer.append(ByteString.copyFromUtf8(String.valueOf(i))));
+    }
+    threadAssertEquals(101L, producer.append(ByteString.copyFromUtf8("flushed"), Durability.LEADER_FLUSHED)
+        .get(5, TimeUnit.SECONDS));
+    for (int i = 0; i < futures.size(); i++) {
+      threadAssertEquals(i + 1L, futures.get(i).get(5, TimeUnit.SECONDS));
+    }
+
+    // Every append must have been flushed by both servers, but appends in flight together share flushes.
+    Term term = termProviderFactory.term();
+    for (String server : Arrays.asList(term.leader(), term.followers().get(0))) {
+      long flushes = registry.histogram(MetricId.of("log.flush.time", "server", server)).snapshot().count();
+      threadAssertTrue(flushes > 0 && flushes < 101);
+    }
+  }
+
+  @Test
+  public void testReceivedAck() throws Throwable {
+    createServers(3, builder -> builder.withAckMode(AckMode.RECEIVED));
+    DistributedLogClient client = createClient();
+    DistributedLogProducer producer = client.producer();
+    List<CompletableFuture<Long>> futures = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      futures.add(producer.append(ByteString.copyFromUtf8(String.valueOf(i))));
+    }
+
+    // Appends waiting for entries to be written to all followers complete even once no more batches are sent.
+    threadAssertEquals(101L, producer.append(ByteString.copyFromUtf8("all"), Durability.ALL).get(5, TimeUnit.SECONDS));
+    for (int i = 0; i < futures.size(); i++) {
+      threadAssertEquals(i + 1L, futures.get(i).get(5, TimeUnit.SECONDS));
+    }
+
+    AtomicInteger count = new AtomicInteger();
+    client.consumer().consume(1, record -> {
+      threadAssertEquals((long) count.incrementAndGet(), record.getIndex());
+      resume();
+    });
+    await(5000, 101);
+  }
+
+  @Test
+  public void testFetch() throws Throwable {
+    createServers(3);
+    DistributedLogClient client = createClient();
+    DistributedLogProducer producer = client.producer();
+    List<CompletableFuture<Long>> futures = new ArrayList<>();
+    for (int i = 1; i <= 200; i++) {
+      futures.add(producer.append(ByteString.copyFromUtf8(Strings.padStart(String.valueOf(i), 100, '0'))));
+    }
+    Futures.allOf(futures).get(5, TimeUnit.SECONDS);
+
+    // Fetches return contiguous records up to the requested size, but at least one record.
+    List<io.atomix.service.protocol.LogRecord> records = client.fetch(11, 1000).get(5, TimeUnit.SECONDS);
+    threadAssertEquals(10, records.size());
+    for (int i = 0; i < records.size(); i++) {
+      threadAssertEquals(11L + i, records.get(i).getIndex());
+    }
+    threadAssertEquals(1, client.fetch(1, 1).get(5, TimeUnit.SECONDS).size());
+    threadAssertTrue(client.fetch(201, 1000).get(5, TimeUnit.SECONDS).isEmpty());
+
+    // Iterators read all committed records in order, even if followers have not yet learned the last commit index.
+    Iterator<io.atomix.service.protocol.LogRecord> iterator = client.iterator(1, 1500);
+    for (int i = 1; i <= 200; i++) {
+      threadAssertTrue(iterator.hasNext());
+      io.atomix.service.protocol.LogRecord record = iterator.next();
+      threadAssertEquals((long) i, record.getIndex());
+      threadAssertEquals(Strings.padStart(String.valueOf(i), 100, '0'), record.getValue().toStringUtf8());
+    }
+    threadAssertFalse(iterator.hasNext());
+  }
+
+  @Test
+  public void testReplay() throws Throwable {
+    createServers(3);
+    DistributedLogClient client = createClient();
+    DistributedLogProducer producer = client.producer();
+    List<CompletableFuture<Long>> futures = new ArrayList<>();
+    for (int i = 1; i <= 3000; i++) {
+      futures.add(producer.append(ByteString.copyFromUtf8(String.valueOf(i))));
+    }
+    Futures.allOf(futures).get(10, TimeUnit.SECONDS);
+
+    // Partitions cover the committed range and are spread across all members.
+    List<DistributedLogPartition> partitions = client.partition(1, 0, 4).get(5, TimeUnit.SECONDS);
+    threadAssertEquals(4, partitions.size());
+    threadAssertEquals(3L, partitions.stream().map(DistributedLogPartition::member).distinct().count());
+    long index = 1;
+    for (DistributedLogPartition partition : partitions) {
+      threadAssertEquals(index, partition.firstIndex());
+      threadAssertEquals(partition.lastIndex() - index + 1, (long) partition.fetch().get(5, TimeUnit.SECONDS).size());
+      for (io.atomix.service.protocol.LogRecord record : partition) {
+        threadAssertEquals(index, record.getIndex());
+        threadAssertEquals(String.valueOf(index++), record.getValue().toStringUtf8());
+      }
+      threadAssertEquals(index - 1, partition.lastIndex());
+    }
+    threadAssertEquals(3001L, index);
+    threadAssertTrue(client.partition(3001, 0, 4).get(5, TimeUnit.SECONDS).isEmpty());
+
+    // Records left over by an even split are spread across the first partitions.
+    partitions = client.partition(1, 10, 4).get(5, TimeUnit.SECONDS);
+    threadAssertEquals(4, partitions.size());
+    threadAssertEquals(Arrays.asList(3L, 3L, 2L, 2L), partitions.stream()
+        .map(partition -> partition.lastIndex() - partition.firstIndex() + 1)
+        .collect(Collectors.toList()));
+    threadAssertEquals(10L, partitions.get(3).lastIndex());
+    threadAssertEquals(2, client.partition(1, 2, 4).get(5, TimeUnit.SECONDS).size());
+
+    // Replays return records in order while fetching chunks concurrently.
+    Iterator<io.atomix.service.protocol.LogRecord> replay = client.replay(1, 0, 3);
+    for (long i = 1; i <= 3000; i++) {
+      threadAssertEquals(i, replay.next().getIndex());
+    }
+    threadAssertFalse(replay.hasNext());
+    replay = client.replay(100, 200, 2);
+    for (long i = 100; i <= 200; i++) {
+      threadAssertEquals(i, replay.next().getIndex());
+    }
+    threadAssertFalse(replay.hasNext());
+  }
+
+  @Test
+  public void testIsolatedLeaderFailover() throws Throwable {
+    protocolFactory.network().setTimeout(Duration.ofMillis(100));
+    createServers(3);
+    DistributedLogClient client = createClient();
+    threadAssertEquals(1L, client.producer().append("1".getBytes()).get(5, TimeUnit.SECONDS));
+
+    // Appends made after the new leader is elected should be committed by the remaining servers.
+    Term term = termProviderFactory.term();
+    protocolFactory.network().isolate(term.leader());
+    termProviderFactory.isolate(term.leader());
+    termProviderFactory.elect(term.followers().get(0), term.followers().subList(1, 2));
+    threadAssertEquals(2L, client.producer().append("2".getBytes()).get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testDuplicateAppend() throws Throwable {
+    createServers(3);
+    LogClientProtocol protocol = protocolFactory.newClientProtocol(nextMemberId());
+    String leader = termProviderFactory.term().leader();
+
+    AppendRequest request = AppendRequest.newBuilder()
+        .setValue(ByteString.copyFromUtf8("Hello world!"))
+        .setProducerId("test")
+        .setSequence(1)
+        .build();
+    AppendResponse response = protocol.append(leader, request).get(5, TimeUnit.SECONDS);
+    threadAssertEquals(ResponseStatus.OK, response.getStatus());
+    threadAssertEquals(1L, response.getIndex());
+
+    // A retried sequence number should be acknowledged with the original index.
+    response = protocol.append(leader, request).get(5, TimeUnit.SECONDS);
+    threadAssertEquals(ResponseStatus.OK, response.getStatus());
+    threadAssertEquals(1L, response.getIndex());
+
+    // A gap in the sequence should be rejected.
+    response = protocol.append(leader, request.toBuilder().setSequence(3).build()).get(5, TimeUnit.SECONDS);
+    threadAssertEquals(ResponseStatus.OUT_OF_SEQUENCE, response.getStatus());
+
+    response = protocol.append(leader, request.toBuilder().setSequence(2).build()).get(5, TimeUnit.SECONDS);
+    threadAssertEquals(ResponseStatus.OK, response.getStatus());
+    threadAssertEquals(2L, response.getIndex());
+  }
+
+  @Test
+  public void testSessionTimeout() throws Throwable {
+    createServers(3, builder -> builder.withSessionTimeout(Duration.ofMillis(100)));
+    LogClientProtocol protocol = protocolFactory.newClientProtocol(nextMemberId());
+    String leader = termProviderFactory.term().leader();
+
+    AppendRequest request = AppendRequest.newBuilder()
+        .setValue(ByteString.copyFromUtf8("Hello world!"))
+        .setProducerId("a")
+        .setSequence(1)
+        .build();
+    threadAssertEquals(1L, protocol.append(leader, request).get(5, TimeUnit.SECONDS).getIndex());
+    Thread.sleep(200);
+    threadAssertEquals(2L, protocol.append(leader, request.toBuilder().setProducerId("b").build())
+        .get(5, TimeUnit.SECONDS).getIndex());
+
+    // The idle producer's session should have expired, while the active producer's session is retained.
+    threadAssertEquals(3L, protocol.append(leader, request).get(5, TimeUnit.SECONDS).getIndex());
+    threadAssertEquals(2L, protocol.append(leader, request.toBuilder().setProducerId("b").build())
+        .get(5, TimeUnit.SECONDS).getIndex());
+  }
+
+  @Test
+  public void testFollowerCatchUp() throws Throwable {
+    createServers(2);
+    DistributedLogClient client = createClient();
+    for (int i = 0; i < 10; i++) {
+      client.producer().append(String.valueOf(i).getBytes()).get(5, TimeUnit.SECONDS);
+    }
+
+    // A new follower should be reconciled with the leader and sent all the entries it's missing.
+    DefaultDistributedLogServer follower = (DefaultDistributedLogServer) createServers(1).get(0);
+    threadAssertEquals(11L, client.producer().append("Hello world!".getBytes()).get(5, TimeUnit.SECONDS));
+    threadAssertEquals(11L, follower.context().writer().getLastIndex());
+  }
+
+  @Test
+  public void testInstallSegments() throws Throwable {
+    MetricsRegistry registry = new MetricsRegistry();
+    Consumer<DistributedLogServer.Builder> config = builder -> builder
+        .withInstallThreshold(10)
+        .withMetricsRegistry(registry);
+    createServers(2, config);
+    DistributedLogClient client = createClient();
+    byte[] value = Strings.repeat("a", 1024).getBytes();
+    for (int i = 0; i < 100; i++) {
+      client.producer().append(value).get(5, TimeUnit.SECONDS);
+    }
+
+    // A new follower far behind the leader should be sent the leader's closed segments and then the remaining entries.
+    DefaultDistributedLogServer follower = (DefaultDistributedLogServer) createServers(1, config).get(0);
+    threadAssertEquals(101L, client.producer().append("Hello world!".getBytes()).get(5, TimeUnit.SECONDS));
+    threadAssertEquals(101L, follower.context().writer().getLastIndex());
+    threadAssertEquals(ByteString.copyFrom(value), follower.context().reader().next().entry().getValue());
+
+    Term term = termProviderFactory.term();
+    threadAssertTrue(registry.counter(MetricId.of("log.backup.install.bytes",
+        "server", term.leader(), "follower", follower.context().serverId())).get() > 0);
+
+    // The follower should restore the leader's producer sessions, including those appended to earlier segments.
+    DefaultDistributedLogServer leader = (DefaultDistributedLogServer) servers.stream()
+        .filter(server -> ((DefaultDistributedLogServer) server).context().serverId().equals(term.leader()))
+        .findFirst()
+        .get();
+    threadAssertEquals(leader.context().sessions().snapshot(), follower.context().sessions().snapshot());
+  }
+
+  @Test
+  public void testRecoverCommitIndex() throws Throwable {
+    DistributedLogServer server = createServers(1).get(0);
+    DistributedLogClient client = createClient();
+    for (int i = 0; i < 10; i++) {
+      client.producer().append(String.valueOf(i).getBytes()).get(5, TimeUnit.SECONDS);
+    }
+    server.stop().get(5, TimeUnit.SECONDS);
+    servers.remove(server);
+
+    // Restart the server and verify committed records can be consumed without appending new records.
+    termProviderFactory = new TestTermProviderFactory();
+    createServer(nodes.get(0), builder -> {
+    }).start().get(5, TimeUnit.SECONDS);
+    createClient().consumer().consume(1, record -> resume());
+    await(5000, 10);
+  }
+
+  @Test
+  public void testMetrics() throws Throwable {
+    MetricsRegistry registry = new MetricsRegistry();
+    createServers(2, builder -> builder.withMetricsRegistry(registry));
+    DistributedLogClient client = createClient();
+    for (int i = 0; i < 10; i++) {
+      client.producer().append(String.valueOf(i).getBytes()).get(5, TimeUnit.SECONDS);
+    }
+
+    String leader = termProviderFactory.term().leader();
+    String follower = termProviderFactory.term().followers().get(0);
+    threadAssertEquals(10L, registry.histogram(MetricId.of("log.append.journal.time", "server", leader))
+        .snapshot().count());
+    threadAssertEquals(10L, registry.histogram(MetricId.of("log.append.replication.time", "server", leader))
+        .snapshot().count());
+    threadAssertEquals(10L, client.metrics()
+        .histogram(MetricId.of("log.client.append.time", "client", client.clientId()))
+        .snapshot().count());
+
+    List<MetricId> gauges = new ArrayList<>();
+    List<MetricId> histograms = new ArrayList<>();
+    registry.export(new MetricsExporter() {
+      @Override
+      public void exportCounter(MetricId id, long count) {
+      }
+
+      @Override
+      public void exportGauge(MetricId id, long value) {
+        gauges.add(id);
+      }
+
+      @Override
+      public void exportHistogram(MetricId id, HistogramSnapshot snapshot) {
+        histograms.add(id);
+      }
+    });
+    threadAssertTrue(gauges.contains(
+        MetricId.of("log.replication.lag.entries", "server", leader, "follower", follower)));
+    threadAssertTrue(gauges.contains(MetricId.of("log.journal.segments", "server", follower)));
+    threadAssertTrue(histograms.contains(MetricId.of("log.backup.rtt", "server", leader, "follower", follower)));
+  }
+
+  @Test
+  public void testHistogram() throws Throwable {
+    Histogram histogram = new Histogram();
+    for (long i = 1; i <= 100000; i++) {
+      histogram.record(i * 1000);
+    }
+    HistogramSnapshot snapshot = histogram.snapshot();
+    threadAssertEquals(100000L, snapshot.count());
+    threadAssertEquals(1000L, snapshot.min());
+    threadAssertEquals(100000000L, snapshot.max());
+    threadAssertTrue(Math.abs(snapshot.percentile(50) - 50000000L) <= 50000000L / 50);
+    threadAssertTrue(Math.abs(snapshot.percentile(99) - 99000000L) <= 99000000L / 50);
+  }
+
   @Test
   public void testConsumeIndex() throws Throwable {
     createServers(3);
@@ -141,11 +751,21 @@ public class DistributedLogTest extends ConcurrentTestCase {
    * Creates a set of Raft servers.
    */
   private List<DistributedLogServer> createServers(int count) throws Throwable {
+    return createServers(count, builder -> {
+    });
+  }
+
+  /**
+   * Creates a set of Raft servers with the given builder configuration.
+   */
+  private List<DistributedLogServer> createServers(int count, Consumer<DistributedLogServer.Builder> config)
+      throws Throwable {
     List<DistributedLogServer> servers = new ArrayList<>();
 
     for (int i = 0; i < count; i++) {
-      nodes.add(nextMemberId());
-      DistributedLogServer server = createServer(nodes.get(i));
+      String memberId = nextMemberId();
+      nodes.add(memberId);
+      DistributedLogServer server = createServer(memberId, config);
       server.start().thenRun(this::resume);
       servers.add(server);
     }
@@ -158,16 +778,17 @@ public class DistributedLogTest extends ConcurrentTestCase {
   /**
    * Creates a Raft server.
    */
-  private DistributedLogServer createServer(String memberId) {
-    DistributedLogServer server = DistributedLogServer.builder()
+  private DistributedLogServer createServer(String memberId, Consumer<DistributedLogServer.Builder> config) {
+    DistributedLogServer.Builder builder = DistributedLogServer.builder()
         .withServerId(memberId)
         .withProtocol(protocolFactory.newServerProtocol(memberId))
         .withTermProvider(termProviderFactory.newTermProvider(memberId))
         .withDirectory(new File("target/test-logs", memberId))
         .withMaxSegmentSize(1024 * 8)
         .withMaxLogSize(1024)
-        .withMaxLogAge(Duration.ofMillis(10))
-        .build();
+        .withMaxLogAge(Duration.ofMillis(10));
+    config.accept(builder);
+    DistributedLogServer server = builder.build();
     servers.add(server);
     return server;
   }
@@ -198,6 +819,10 @@ public class DistributedLogTest extends ConcurrentTestCase {
         .collect(Collectors.toList()))
         .get(30, TimeUnit.SECONDS);
 
+    if (protocolFactory != null) {
+      protocolFactory.network().close();
+    }
+
     Path directory = Paths.get("target/test-logs/");
     if (Files.exists(directory)) {
       Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
@@ -17,11 +17,11 @@ package io.atomix.log;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
-import com.google.common.collect.Sets;
+import com.google.common.collect.Maps;
 import io.atomix.protocols.log.Term;
 import io.atomix.protocols.log.TermProvider;
 
@@ -39,23 +39,28 @@ public class TestTermProvider implements TermProvider {
 
   @Override
   public CompletableFuture<Term> join() {
-    if (context.term == null) {
-      context.term = new Term(++context.counter, memberId, context.followers);
-    } else {
-      context.followers.add(memberId);
+    Term term;
+    synchronized (context) {
+      if (context.term == null) {
+        context.term = new Term(++context.counter, memberId, context.followers);
+      } else {
+        context.followers.add(memberId);
+      }
+      term = context.term;
     }
-    context.listeners.forEach(l -> l.accept(context.term));
-    return CompletableFuture.completedFuture(context.term);
+    context.publish(term);
+    return CompletableFuture.completedFuture(term);
   }
 
   @Override
   public CompletableFuture<Term> getTerm() {
-    return CompletableFuture.completedFuture(context.term);
+    Term term = context.isolated.get(memberId);
+    return CompletableFuture.completedFuture(term != null ? term : context.term);
   }
 
   @Override
   public CompletableFuture<Void> addListener(Consumer<Term> listener) {
-    context.listeners.add(listener);
+    context.listeners.put(listener, memberId);
     return CompletableFuture.completedFuture(null);
   }
 
@@ -65,10 +70,69 @@ public class TestTermProvider implements TermProvider {
     return CompletableFuture.completedFuture(null);
   }
 
+  /**
+   * Term state shared by the term providers of all members.
+   */
   public static class Context {
     private long counter;
-    private Term term;
+    private volatile Term term;
     private List<String> followers = new ArrayList<>();
-    private final Set<Consumer<Term>> listeners = Sets.newConcurrentHashSet();
+    private final Map<Consumer<Term>, String> listeners = Maps.newConcurrentMap();
+    private final Map<String, Term> isolated = Maps.newConcurrentMap();
+
+    /**
+     * Returns the current term.
+     *
+     * @return the current term
+     */
+    Term term() {
+      return term;
+    }
+
+    /**
+     * Starts a new term with the given leader and followers.
+     *
+     * @param leader    the leader for the new term
+     * @param followers the followers for the new term
+     * @return the new term
+     */
+    Term elect(String leader, List<String> followers) {
+      Term term;
+      synchronized (this) {
+        this.followers = new ArrayList<>(followers);
+        term = new Term(++counter, leader, this.followers);
+        this.term = term;
+      }
+      publish(term);
+      return term;
+    }
+
+    /**
+     * Stops publishing terms to the given member, which continues to see the current term.
+     *
+     * @param memberId the member to isolate
+     */
+    void isolate(String memberId) {
+      isolated.put(memberId, term);
+    }
+
+    /**
+     * Resumes publishing terms to all members, and publishes the current term to previously isolated members.
+     */
+    void heal() {
+      isolated.clear();
+      publish(term);
+    }
+
+    /**
+     * Publishes the given term to members that are not isolated.
+     */
+    private void publish(Term term) {
+      listeners.forEach((listener, memberId) -> {
+        if (!isolated.containsKey(memberId)) {
+          listener.accept(term);
+        }
+      });
+    }
   }
 }
@@ -15,6 +15,9 @@
  */
 package io.atomix.log;
 
+import java.util.List;
+
+import io.atomix.protocols.log.Term;
 import io.atomix.protocols.log.TermProvider;
 
 /**
@@ -26,4 +29,43 @@ public class TestTermProviderFactory {
   public TermProvider newTermProvider(String memberId) {
     return new TestTermProvider(memberId, context);
   }
+
+  /**
+   * Returns the current term.
+   *
+   * @return the current term
+   */
+  public Term term() {
+    return context.term();
+  }
+
+  /**
+   * Elects the given leader in a new term.
+   *
+   * @param leader    the leader for the new term
+   * @param followers the followers for the new term
+   * @return the new term
+   */
+  public Term elect(String leader, List<String> followers) {
+    return context.elect(leader, followers);
+  }
+
+  /**
+   * Isolates the given member from term changes.
+   * <p>
+   * An isolated member continues to see the term in which it was isolated, as a member partitioned from the election
+   * service would.
+   *
+   * @param memberId the member to isolate
+   */
+  public void isolate(String memberId) {
+    context.isolate(memberId);
+  }
+
+  /**
+   * Heals all isolated members.
+   */
+  public void heal() {
+    context.heal();
+  }
 }
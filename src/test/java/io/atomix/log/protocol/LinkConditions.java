@@ -0,0 +1,204 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.log.protocol;
+
+import java.time.Duration;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Emulated network link conditions.
+ */
+public final class LinkConditions {
+
+  /**
+   * Conditions of a perfect link which delivers messages instantly.
+   */
+  public static final LinkConditions NONE = builder().build();
+
+  /**
+   * Returns a new link conditions builder.
+   *
+   * @return a new link conditions builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  private final Duration latency;
+  private final Duration jitter;
+  private final long bandwidth;
+  private final double dropRate;
+  private final double reorderRate;
+
+  private LinkConditions(Duration latency, Duration jitter, long bandwidth, double dropRate, double reorderRate) {
+    this.latency = latency;
+    this.jitter = jitter;
+    this.bandwidth = bandwidth;
+    this.dropRate = dropRate;
+    this.reorderRate = reorderRate;
+  }
+
+  /**
+   * Returns the one-way link latency.
+   *
+   * @return the one-way link latency
+   */
+  public Duration latency() {
+    return latency;
+  }
+
+  /**
+   * Returns the maximum random delay added to the latency of each message.
+   *
+   * @return the maximum random delay added to each message
+   */
+  public Duration jitter() {
+    return jitter;
+  }
+
+  /**
+   * Returns the link bandwidth in bytes per second.
+   *
+   * @return the link bandwidth in bytes per second or {@code 0} if the bandwidth is unlimited
+   */
+  public long bandwidth() {
+    return bandwidth;
+  }
+
+  /**
+   * Returns the probability that a message is dropped.
+   *
+   * @return the probability that a message is dropped
+   */
+  public double dropRate() {
+    return dropRate;
+  }
+
+  /**
+   * Returns the probability that a message may overtake messages sent before it.
+   *
+   * @return the probability that a message may be delivered out of order
+   */
+  public double reorderRate() {
+    return reorderRate;
+  }
+
+  /**
+   * Returns a boolean indicating whether the link delivers messages instantly and in order.
+   *
+   * @return indicates whether the link delivers messages instantly and in order
+   */
+  boolean isPerfect() {
+    return latency.isZero() && jitter.isZero() && bandwidth == 0 && dropRate == 0 && reorderRate == 0;
+  }
+
+  @Override
+  public String toString() {
+    return toStringHelper(this)
+        .add("latency", latency)
+        .add("jitter", jitter)
+        .add("bandwidth", bandwidth)
+        .add("dropRate", dropRate)
+        .add("reorderRate", reorderRate)
+        .toString();
+  }
+
+  /**
+   * Link conditions builder.
+   */
+  public static class Builder {
+    private Duration latency = Duration.ZERO;
+    private Duration jitter = Duration.ZERO;
+    private long bandwidth;
+    private double dropRate;
+    private double reorderRate;
+
+    /**
+     * Sets the one-way link latency.
+     *
+     * @param latency the one-way link latency
+     * @return the link conditions builder
+     */
+    public Builder withLatency(Duration latency) {
+      this.latency = checkNotNull(latency, "latency cannot be null");
+      return this;
+    }
+
+    /**
+     * Sets the maximum random delay added to the latency of each message.
+     * <p>
+     * Messages are delivered in order unless reordering is enabled, so jitter delays later messages behind earlier
+     * ones as it would on a TCP connection.
+     *
+     * @param jitter the maximum random delay added to each message
+     * @return the link conditions builder
+     */
+    public Builder withJitter(Duration jitter) {
+      this.jitter = checkNotNull(jitter, "jitter cannot be null");
+      return this;
+    }
+
+    /**
+     * Sets the link bandwidth.
+     *
+     * @param bandwidth the link bandwidth in bytes per second, or {@code 0} for unlimited bandwidth
+     * @return the link conditions builder
+     */
+    public Builder withBandwidth(long bandwidth) {
+      checkArgument(bandwidth >= 0, "bandwidth cannot be negative");
+      this.bandwidth = bandwidth;
+      return this;
+    }
+
+    /**
+     * Sets the probability that a message is dropped.
+     * <p>
+     * Requests whose request or response is dropped fail with a timeout.
+     *
+     * @param dropRate the probability that a message is dropped
+     * @return the link conditions builder
+     */
+    public Builder withDropRate(double dropRate) {
+      checkArgument(dropRate >= 0 && dropRate <= 1, "dropRate must be between 0 and 1");
+      this.dropRate = dropRate;
+      return this;
+    }
+
+    /**
+     * Sets the probability that a message may overtake messages sent before it.
+     *
+     * @param reorderRate the probability that a message may be delivered out of order
+     * @return the link conditions builder
+     */
+    public Builder withReorderRate(double reorderRate) {
+      checkArgument(reorderRate >= 0 && reorderRate <= 1, "reorderRate must be between 0 and 1");
+      this.reorderRate = reorderRate;
+      return this;
+    }
+
+    /**
+     * Builds the link conditions.
+     *
+     * @return the link conditions
+     */
+    public LinkConditions build() {
+      return new LinkConditions(latency, jitter, bandwidth, dropRate, reorderRate);
+    }
+  }
+}
@@ -18,13 +18,16 @@ package io.atomix.log.protocol;
 import java.net.ConnectException;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.atomix.protocols.log.protocol.AppendRequest;
 import io.atomix.protocols.log.protocol.AppendResponse;
+import io.atomix.protocols.log.protocol.ConsumeControl;
 import io.atomix.protocols.log.protocol.ConsumeRequest;
 import io.atomix.protocols.log.protocol.ConsumeResponse;
+import io.atomix.protocols.log.protocol.FetchRequest;
+import io.atomix.protocols.log.protocol.FetchResponse;
 import io.atomix.protocols.log.protocol.LogClientProtocol;
-import io.atomix.protocols.log.protocol.ResetRequest;
 import io.atomix.utils.concurrent.Futures;
 import io.atomix.utils.stream.StreamHandler;
 
@@ -32,8 +35,12 @@ import io.atomix.utils.stream.StreamHandler;
  * Test Raft client protocol.
  */
 public class TestLogClientProtocol extends TestLogProtocol implements LogClientProtocol {
-  public TestLogClientProtocol(String memberId, Map<String, TestLogServerProtocol> servers, Map<String, TestLogClientProtocol> clients) {
-    super(servers, clients);
+  public TestLogClientProtocol(
+      String memberId,
+      TestNetwork network,
+      Map<String, TestLogServerProtocol> servers,
+      Map<String, TestLogClientProtocol> clients) {
+    super(memberId, network, servers, clients);
     clients.put(memberId, this);
   }
 
@@ -48,16 +55,67 @@ public class TestLogClientProtocol extends TestLogProtocol implements LogClientP
 
   @Override
   public CompletableFuture<AppendResponse> append(String memberId, AppendRequest request) {
-    return getServer(memberId).thenCompose(server -> server.append(request));
+    return network().request(memberId(), memberId, request.getSerializedSize(),
+        () -> getServer(memberId).thenCompose(server -> server.append(request)), AppendResponse::getSerializedSize);
   }
 
   @Override
-  public CompletableFuture<Void> consume(String memberId, ConsumeRequest request, StreamHandler<ConsumeResponse> handler) {
-    return getServer(memberId).thenCompose(server -> server.consume(request, handler));
+  public CompletableFuture<FetchResponse> fetch(String memberId, FetchRequest request) {
+    return network().request(memberId(), memberId, request.getSerializedSize(),
+        () -> getServer(memberId).thenCompose(server -> server.fetch(request)), FetchResponse::getSerializedSize);
   }
 
   @Override
-  public void reset(String memberId, ResetRequest request) {
-    getServer(memberId).thenAccept(server -> server.reset(request));
+  public StreamHandler<ConsumeControl> consume(
+      String memberId, ConsumeRequest request, StreamHandler<ConsumeResponse> handler) {
+    AtomicBoolean closed = new AtomicBoolean();
+    StreamHandler<ConsumeResponse> remoteHandler = new StreamHandler<ConsumeResponse>() {
+      @Override
+      public void next(ConsumeResponse response) {
+        if (!closed.get()) {
+          network().send(memberId, memberId(), response.getSerializedSize(), () -> handler.next(response));
+        }
+      }
+
+      @Override
+      public void complete() {
+        network().send(memberId, memberId(), 0, handler::complete);
+      }
+
+      @Override
+      public void error(Throwable error) {
+        network().send(memberId, memberId(), 0, () -> handler.error(error));
+      }
+    };
+    network().request(memberId(), memberId, request.getSerializedSize(),
+        () -> getServer(memberId).thenCompose(server -> server.consume(request, remoteHandler)), response -> 0);
+
+    // Control messages and the closing of the session reach the server in order after the consume request.
+    return new StreamHandler<ConsumeControl>() {
+      @Override
+      public void next(ConsumeControl control) {
+        network().send(memberId(), memberId, control.getSerializedSize(),
+            () -> getServer(memberId).thenAccept(server -> server.control(control)));
+      }
+
+      @Override
+      public void complete() {
+        ConsumeControl close = ConsumeControl.newBuilder()
+            .setMemberId(request.getMemberId())
+            .setConsumerId(request.getConsumerId())
+            .setSessionId(request.getSessionId())
+            .setClose(true)
+            .build();
+        network().send(memberId(), memberId, 0, () -> {
+          closed.set(true);
+          getServer(memberId).thenAccept(server -> server.control(close));
+        });
+      }
+
+      @Override
+      public void error(Throwable error) {
+        complete();
+      }
+    };
   }
 }
@@ -22,14 +22,30 @@ import java.util.Map;
  * Base class for Raft protocol.
  */
 public abstract class TestLogProtocol {
+  private final String memberId;
+  private final TestNetwork network;
   private final Map<String, TestLogServerProtocol> servers;
   private final Map<String, TestLogClientProtocol> clients;
 
-  public TestLogProtocol(Map<String, TestLogServerProtocol> servers, Map<String, TestLogClientProtocol> clients) {
+  public TestLogProtocol(
+      String memberId,
+      TestNetwork network,
+      Map<String, TestLogServerProtocol> servers,
+      Map<String, TestLogClientProtocol> clients) {
+    this.memberId = memberId;
+    this.network = network;
     this.servers = servers;
     this.clients = clients;
   }
 
+  String memberId() {
+    return memberId;
+  }
+
+  TestNetwork network() {
+    return network;
+  }
+
   TestLogServerProtocol server(String memberId) {
     return servers.get(memberId);
   }
@@ -25,9 +25,27 @@ import io.atomix.protocols.log.protocol.LogServerProtocol;
  * Test primary-backup protocol factory.
  */
 public class TestLogProtocolFactory {
+  private final TestNetwork network;
   private final Map<String, TestLogServerProtocol> servers = Maps.newConcurrentMap();
   private final Map<String, TestLogClientProtocol> clients = Maps.newConcurrentMap();
 
+  public TestLogProtocolFactory() {
+    this(new TestNetwork());
+  }
+
+  public TestLogProtocolFactory(TestNetwork network) {
+    this.network = network;
+  }
+
+  /**
+   * Returns the emulated network over which the protocols communicate.
+   *
+   * @return the emulated network
+   */
+  public TestNetwork network() {
+    return network;
+  }
+
   /**
    * Returns a new test client protocol.
    *
@@ -35,7 +53,7 @@ public class TestLogProtocolFactory {
    * @return a new test client protocol
    */
   public LogClientProtocol newClientProtocol(String memberId) {
-    return new TestLogClientProtocol(memberId, servers, clients);
+    return new TestLogClientProtocol(memberId, network, servers, clients);
   }
 
   /**
@@ -45,6 +63,6 @@ public class TestLogProtocolFactory {
    * @return a new test server protocol
    */
   public LogServerProtocol newServerProtocol(String memberId) {
-    return new TestLogServerProtocol(memberId, servers, clients);
+    return new TestLogServerProtocol(memberId, network, servers, clients);
   }
 }
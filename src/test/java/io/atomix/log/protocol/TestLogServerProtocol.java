@@ -27,10 +27,14 @@ import io.atomix.protocols.log.protocol.AppendRequest;
 import io.atomix.protocols.log.protocol.AppendResponse;
 import io.atomix.protocols.log.protocol.BackupRequest;
 import io.atomix.protocols.log.protocol.BackupResponse;
+import io.atomix.protocols.log.protocol.ConsumeControl;
 import io.atomix.protocols.log.protocol.ConsumeRequest;
 import io.atomix.protocols.log.protocol.ConsumeResponse;
+import io.atomix.protocols.log.protocol.FetchRequest;
+import io.atomix.protocols.log.protocol.FetchResponse;
+import io.atomix.protocols.log.protocol.InstallRequest;
+import io.atomix.protocols.log.protocol.InstallResponse;
 import io.atomix.protocols.log.protocol.LogServerProtocol;
-import io.atomix.protocols.log.protocol.ResetRequest;
 import io.atomix.utils.concurrent.Futures;
 import io.atomix.utils.stream.StreamHandler;
 
@@ -41,10 +45,16 @@ public class TestLogServerProtocol extends TestLogProtocol implements LogServerP
   private volatile Function<AppendRequest, CompletableFuture<AppendResponse>> appendHandler;
   private volatile Function<BackupRequest, CompletableFuture<BackupResponse>> backupHandler;
   private volatile BiFunction<ConsumeRequest, StreamHandler<ConsumeResponse>, CompletableFuture<Void>> consumeHandler;
-  private volatile Consumer<ResetRequest> resetConsumer;
-
-  public TestLogServerProtocol(String memberId, Map<String, TestLogServerProtocol> servers, Map<String, TestLogClientProtocol> clients) {
-    super(servers, clients);
+  private volatile Consumer<ConsumeControl> controlConsumer;
+  private volatile Function<FetchRequest, CompletableFuture<FetchResponse>> fetchHandler;
+  private volatile Function<InstallRequest, CompletableFuture<InstallResponse>> installHandler;
+
+  public TestLogServerProtocol(
+      String memberId,
+      TestNetwork network,
+      Map<String, TestLogServerProtocol> servers,
+      Map<String, TestLogClientProtocol> clients) {
+    super(memberId, network, servers, clients);
     servers.put(memberId, this);
   }
 
@@ -68,7 +78,14 @@ public class TestLogServerProtocol extends TestLogProtocol implements LogServerP
 
   @Override
   public CompletableFuture<BackupResponse> backup(String memberId, BackupRequest request) {
-    return getServer(memberId).thenCompose(server -> server.backup(request));
+    return network().request(memberId(), memberId, request.getSerializedSize(),
+        () -> getServer(memberId).thenCompose(server -> server.backup(request)), BackupResponse::getSerializedSize);
+  }
+
+  @Override
+  public CompletableFuture<InstallResponse> install(String memberId, InstallRequest request) {
+    return network().request(memberId(), memberId, request.getSerializedSize(),
+        () -> getServer(memberId).thenCompose(server -> server.install(request)), InstallResponse::getSerializedSize);
   }
 
   CompletableFuture<AppendResponse> append(AppendRequest request) {
@@ -89,10 +106,19 @@ public class TestLogServerProtocol extends TestLogProtocol implements LogServerP
     }
   }
 
-  void reset(ResetRequest request) {
-    Consumer<ResetRequest> resetConsumer = this.resetConsumer;
-    if (resetConsumer != null) {
-      resetConsumer.accept(request);
+  void control(ConsumeControl control) {
+    Consumer<ConsumeControl> controlConsumer = this.controlConsumer;
+    if (controlConsumer != null) {
+      controlConsumer.accept(control);
+    }
+  }
+
+  CompletableFuture<FetchResponse> fetch(FetchRequest request) {
+    Function<FetchRequest, CompletableFuture<FetchResponse>> fetchHandler = this.fetchHandler;
+    if (fetchHandler != null) {
+      return fetchHandler.apply(request);
+    } else {
+      return Futures.exceptionalFuture(new ConnectException());
     }
   }
 
@@ -105,6 +131,15 @@ public class TestLogServerProtocol extends TestLogProtocol implements LogServerP
     }
   }
 
+  CompletableFuture<InstallResponse> install(InstallRequest request) {
+    Function<InstallRequest, CompletableFuture<InstallResponse>> installHandler = this.installHandler;
+    if (installHandler != null) {
+      return installHandler.apply(request);
+    } else {
+      return Futures.exceptionalFuture(new ConnectException());
+    }
+  }
+
   @Override
   public void registerAppendHandler(Function<AppendRequest, CompletableFuture<AppendResponse>> handler) {
     this.appendHandler = handler;
@@ -125,6 +160,16 @@ public class TestLogServerProtocol extends TestLogProtocol implements LogServerP
     this.backupHandler = null;
   }
 
+  @Override
+  public void registerInstallHandler(Function<InstallRequest, CompletableFuture<InstallResponse>> handler) {
+    this.installHandler = handler;
+  }
+
+  @Override
+  public void unregisterInstallHandler() {
+    this.installHandler = null;
+  }
+
   @Override
   public void registerConsumeHandler(BiFunction<ConsumeRequest, StreamHandler<ConsumeResponse>, CompletableFuture<Void>> handler) {
     this.consumeHandler = handler;
@@ -136,12 +181,22 @@ public class TestLogServerProtocol extends TestLogProtocol implements LogServerP
   }
 
   @Override
-  public void registerResetConsumer(Consumer<ResetRequest> consumer, Executor executor) {
-    this.resetConsumer = request -> executor.execute(() -> consumer.accept(request));
+  public void registerFetchHandler(Function<FetchRequest, CompletableFuture<FetchResponse>> handler) {
+    this.fetchHandler = handler;
+  }
+
+  @Override
+  public void unregisterFetchHandler() {
+    this.fetchHandler = null;
+  }
+
+  @Override
+  public void registerConsumeControlConsumer(Consumer<ConsumeControl> consumer, Executor executor) {
+    this.controlConsumer = control -> executor.execute(() -> consumer.accept(control));
   }
 
   @Override
-  public void unregisterResetConsumer() {
-    this.resetConsumer = null;
+  public void unregisterConsumeControlConsumer() {
+    this.controlConsumer = null;
   }
 }
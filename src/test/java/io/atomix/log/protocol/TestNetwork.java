@@ -0,0 +1,323 @@
+/*
+ * Copyright 2019-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.log.protocol;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Emulated network for the test protocol.
+ * <p>
+ * Each direction of each link between two members has its own {@link LinkConditions}. Messages on links with latency,
+ * jitter or limited bandwidth are delivered by a single scheduler thread at the time they would arrive, and messages
+ * on a link are delivered in the order in which they were sent unless reordering is enabled. Dropped messages and
+ * messages sent across a partition are never delivered, and requests that lose a message fail with a
+ * {@link TimeoutException} once the network's timeout expires. By default all links are perfect and messages are
+ * delivered immediately on the sending thread.
+ * <p>
+ * Each link takes its random decisions from its own generator, seeded from the network's seed and the link's members,
+ * so the sequence of messages sent on a link is always delayed, reordered and dropped in the same way regardless of
+ * the traffic on other links.
+ */
+public class TestNetwork implements AutoCloseable {
+  private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(1);
+
+  private final long seed;
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("test-network-%d").setDaemon(true).build());
+  private final Map<Link, LinkConditions> conditions = new ConcurrentHashMap<>();
+  private final Map<Link, LinkState> links = new ConcurrentHashMap<>();
+  private final Set<Link> partitions = ConcurrentHashMap.newKeySet();
+  private final Set<String> isolated = ConcurrentHashMap.newKeySet();
+  private volatile LinkConditions defaultConditions = LinkConditions.NONE;
+  private volatile Duration timeout = DEFAULT_TIMEOUT;
+
+  public TestNetwork() {
+    this(0);
+  }
+
+  public TestNetwork(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Sets the conditions of all links without link specific conditions.
+   *
+   * @param conditions the link conditions
+   * @return the network
+   */
+  public TestNetwork setConditions(LinkConditions conditions) {
+    this.defaultConditions = checkNotNull(conditions, "conditions cannot be null");
+    return this;
+  }
+
+  /**
+   * Sets the conditions of the link from one member to another.
+   *
+   * @param from       the sending member
+   * @param to         the receiving member
+   * @param conditions the link conditions
+   * @return the network
+   */
+  public TestNetwork setConditions(String from, String to, LinkConditions conditions) {
+    this.conditions.put(new Link(from, to), checkNotNull(conditions, "conditions cannot be null"));
+    return this;
+  }
+
+  /**
+   * Sets the time after which requests that lose a message fail.
+   *
+   * @param timeout the request timeout
+   * @return the network
+   */
+  public TestNetwork setTimeout(Duration timeout) {
+    this.timeout = checkNotNull(timeout, "timeout cannot be null");
+    return this;
+  }
+
+  /**
+   * Partitions two members from each other.
+   *
+   * @param member1 the first member
+   * @param member2 the second member
+   */
+  public void partition(String member1, String member2) {
+    partitions.add(new Link(member1, member2));
+    partitions.add(new Link(member2, member1));
+  }
+
+  /**
+   * Heals the partition between two members.
+   *
+   * @param member1 the first member
+   * @param member2 the second member
+   */
+  public void heal(String member1, String member2) {
+    partitions.remove(new Link(member1, member2));
+    partitions.remove(new Link(member2, member1));
+  }
+
+  /**
+   * Partitions a member from all other members.
+   *
+   * @param member the member to isolate
+   */
+  public void isolate(String member) {
+    isolated.add(member);
+  }
+
+  /**
+   * Heals all partitions.
+   */
+  public void heal() {
+    partitions.clear();
+    isolated.clear();
+  }
+
+  /**
+   * Sends a request and its response across the network.
+   *
+   * @param from         the requesting member
+   * @param to           the responding member
+   * @param size         the size of the request in bytes
+   * @param handler      the request handler to call on delivery
+   * @param responseSize a function returning the size of the response in bytes
+   * @param <T>          the response type
+   * @return a future to be completed with the response once it has been delivered
+   */
+  <T> CompletableFuture<T> request(
+      String from, String to, int size, Supplier<CompletableFuture<T>> handler, ToIntFunction<T> responseSize) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    boolean sent = send(from, to, size, () -> handler.get().whenComplete((response, error) -> {
+      boolean received = error == null
+          ? send(to, from, responseSize.applyAsInt(response), () -> future.complete(response))
+          : send(to, from, 0, () -> future.completeExceptionally(error));
+      if (!received) {
+        timeout(future);
+      }
+    }));
+    if (!sent) {
+      timeout(future);
+    }
+    return future;
+  }
+
+  /**
+   * Sends a one-way message across the network.
+   *
+   * @param from    the sending member
+   * @param to      the receiving member
+   * @param size    the size of the message in bytes
+   * @param handler the message handler to call on delivery
+   * @return indicates whether the message will be delivered
+   */
+  boolean send(String from, String to, int size, Runnable handler) {
+    Link link = new Link(from, to);
+    if (partitions.contains(link) || isolated.contains(from) || isolated.contains(to)) {
+      return false;
+    }
+
+    LinkConditions conditions = this.conditions.getOrDefault(link, defaultConditions);
+    if (conditions.isPerfect()) {
+      handler.run();
+      return true;
+    }
+    return links.computeIfAbsent(link, LinkState::new).send(conditions, size, handler);
+  }
+
+  /**
+   * Fails the given future once the request timeout expires.
+   */
+  private void timeout(CompletableFuture<?> future) {
+    scheduler.schedule(() -> future.completeExceptionally(new TimeoutException()),
+        timeout.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Link state.
+   * <p>
+   * Messages delivered in order are queued on the link, and each message's timer delivers all queued messages that are
+   * due, so messages due at the same time are never reordered by the scheduler.
+   */
+  private final class LinkState {
+    private final Queue<Message> queue = new ArrayDeque<>();
+    private final Random random;
+    private long busyUntil;
+    private long lastDelivery;
+
+    LinkState(Link link) {
+      this.random = new Random(seed * 31 + link.hashCode());
+    }
+
+    /**
+     * Schedules delivery of a message of the given size sent now, unless the message is dropped.
+     *
+     * @param conditions the link conditions
+     * @param size       the message size in bytes
+     * @param handler    the message handler to call on delivery
+     * @return indicates whether the message will be delivered
+     */
+    boolean send(LinkConditions conditions, int size, Runnable handler) {
+      long now = System.nanoTime();
+      long deliveryTime;
+      boolean ordered;
+      synchronized (this) {
+        if (conditions.dropRate() > 0 && random.nextDouble() < conditions.dropRate()) {
+          return false;
+        }
+
+        long sendTime = now;
+        if (conditions.bandwidth() > 0) {
+          sendTime = Math.max(now, busyUntil) + TimeUnit.SECONDS.toNanos(size) / conditions.bandwidth();
+          busyUntil = sendTime;
+        }
+
+        deliveryTime = sendTime + conditions.latency().toNanos();
+        if (!conditions.jitter().isZero()) {
+          deliveryTime += (long) (random.nextDouble() * conditions.jitter().toNanos());
+        }
+        ordered = conditions.reorderRate() == 0 || random.nextDouble() >= conditions.reorderRate();
+        if (ordered) {
+          deliveryTime = Math.max(deliveryTime, lastDelivery);
+          lastDelivery = deliveryTime;
+          queue.add(new Message(deliveryTime, handler));
+        }
+      }
+      scheduler.schedule(ordered ? this::deliver : handler, deliveryTime - now, TimeUnit.NANOSECONDS);
+      return true;
+    }
+
+    /**
+     * Delivers queued messages that are due.
+     */
+    private void deliver() {
+      long now = System.nanoTime();
+      while (true) {
+        Message message;
+        synchronized (this) {
+          message = queue.peek();
+          if (message == null || message.deliveryTime > now) {
+            return;
+          }
+          queue.remove();
+        }
+        message.handler.run();
+      }
+    }
+  }
+
+  /**
+   * Message queued for delivery.
+   */
+  private static final class Message {
+    private final long deliveryTime;
+    private final Runnable handler;
+
+    Message(long deliveryTime, Runnable handler) {
+      this.deliveryTime = deliveryTime;
+      this.handler = handler;
+    }
+  }
+
+  /**
+   * Directed link between two members.
+   */
+  private static final class Link {
+    private final String from;
+    private final String to;
+
+    Link(String from, String to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(from, to);
+    }
+
+    @Override
+    public boolean equals(Object object) {
+      if (object instanceof Link) {
+        Link that = (Link) object;
+        return from.equals(that.from) && to.equals(that.to);
+      }
+      return false;
+    }
+  }
+}